@@ -0,0 +1,188 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Doublures sans réseau ni base pour les benchmarks : seul le code de l'application est mesuré
+ */
+final class BenchmarkFixtures {
+    
+    static final String PASSAGE = "Pour configurer une source de données, définissez spring.datasource.url, "
+        + "spring.datasource.username et spring.datasource.password dans application.properties. "
+        + "Spring Boot crée alors automatiquement un pool de connexions HikariCP. "
+        + "La taille du pool se règle avec spring.datasource.hikari.maximum-pool-size. ";
+    
+    private BenchmarkFixtures() {
+    }
+    
+    static List<Document> passages(int count, int repeat) {
+        List<Document> documents = new ArrayList<>(count);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < count; i++) {
+            documents.add(Document.builder()
+                .id("doc-" + i + "-chunk-0")
+                .text(i + " " + PASSAGE.repeat(repeat))
+                .metadata(Map.of("id", "doc-" + i, "title", "Document " + i))
+                .score(random.nextDouble())
+                .build());
+        }
+        return documents;
+    }
+    
+    /**
+     * Dépôt Spring Data factice : save renvoie l'entité, les recherches ne trouvent rien
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T repository(Class<T> repositoryType) {
+        return (T) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+            (proxy, method, args) -> {
+                Class<?> returnType = method.getReturnType();
+                if (method.getName().startsWith("save")) {
+                    return args[0];
+                }
+                if (returnType == Optional.class) {
+                    return Optional.empty();
+                }
+                if (returnType == List.class || returnType == Collection.class || returnType == Iterable.class) {
+                    return List.of();
+                }
+                if (returnType == Set.class) {
+                    return Set.of();
+                }
+                if (returnType == long.class || returnType == Long.class) {
+                    return 0L;
+                }
+                if (returnType == int.class || returnType == Integer.class) {
+                    return 0;
+                }
+                if (returnType == boolean.class) {
+                    return false;
+                }
+                if (method.getName().equals("toString")) {
+                    return repositoryType.getSimpleName() + "Stub";
+                }
+                if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+                return null;
+            });
+    }
+    
+    static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Impossible d'initialiser " + name, e);
+        }
+    }
+    
+    static ChatModel chatModel(String answer) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return ChatResponse.builder()
+                    .generations(List.of(new Generation(new AssistantMessage(answer))))
+                    .metadata(ChatResponseMetadata.builder().usage(new DefaultUsage(900, 150)).build())
+                    .build();
+            }
+        };
+    }
+    
+    static EmbeddingModel embeddingModel(int dimensions) {
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                List<Embedding> embeddings = new ArrayList<>();
+                for (int i = 0; i < request.getInstructions().size(); i++) {
+                    embeddings.add(new Embedding(vector(request.getInstructions().get(i)), i));
+                }
+                return new EmbeddingResponse(embeddings);
+            }
+            
+            @Override
+            public float[] embed(Document document) {
+                return vector(document.getText());
+            }
+            
+            private float[] vector(String text) {
+                SplittableRandom random = new SplittableRandom(text.hashCode());
+                float[] vector = new float[dimensions];
+                for (int i = 0; i < dimensions; i++) {
+                    vector[i] = (float) random.nextGaussian();
+                }
+                return vector;
+            }
+        };
+    }
+    
+    static VectorStore vectorStore(List<Document> results) {
+        return new VectorStore() {
+            @Override
+            public void add(List<Document> documents) {
+            }
+            
+            @Override
+            public void delete(List<String> idList) {
+            }
+            
+            @Override
+            public void delete(Filter.Expression filterExpression) {
+            }
+            
+            @Override
+            public List<Document> similaritySearch(SearchRequest request) {
+                return results.subList(0, Math.min(request.getTopK(), results.size()));
+            }
+        };
+    }
+    
+    static PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+            
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+            
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+}
\ No newline at end of file
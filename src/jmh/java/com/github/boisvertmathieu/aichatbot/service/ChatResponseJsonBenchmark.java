@@ -0,0 +1,45 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.boisvertmathieu.aichatbot.dto.ChatResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation JSON de la réponse de /api/chat, configurée comme l'ObjectMapper de Spring Boot
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChatResponseJsonBenchmark {
+    
+    private ObjectMapper objectMapper;
+    private ChatResponse chatResponse;
+    
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        
+        chatResponse = ChatResponse.builder()
+            .conversationId("conversation-123")
+            .response(BenchmarkFixtures.PASSAGE.repeat(5))
+            .retrievedDocumentIds(List.of("doc-1", "doc-2", "doc-3", "doc-4", "doc-5"))
+            .tokensUsed(1050)
+            .timestamp(LocalDateTime.of(2025, 1, 1, 12, 0))
+            .success(true)
+            .build();
+    }
+    
+    @Benchmark
+    public String serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(chatResponse);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash SHA-256 des contenus (generateEmbeddingHash et clés du stockage d'embeddings)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentHashBenchmark {
+    
+    @Param({"1", "10", "100"})
+    private int passageRepeat;
+    
+    private String content;
+    
+    @Setup
+    public void setUp() {
+        content = BenchmarkFixtures.PASSAGE.repeat(passageRepeat);
+    }
+    
+    @Benchmark
+    public String sha256() {
+        return ContentHash.sha256(content);
+    }
+}
\ No newline at end of file
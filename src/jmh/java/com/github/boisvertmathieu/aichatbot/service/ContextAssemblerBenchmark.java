@@ -0,0 +1,37 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction du prompt contextuel (anciennement buildContextualPrompt) : comptage des tokens,
+ * tri, dédoublonnage et troncature
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContextAssemblerBenchmark {
+    
+    @Param({"5", "20"})
+    private int documentCount;
+    
+    @Param({"1", "10"})
+    private int passageRepeat;
+    
+    private ContextAssembler contextAssembler;
+    private List<Document> documents;
+    
+    @Setup
+    public void setUp() {
+        contextAssembler = new ContextAssembler(3000, 50);
+        documents = BenchmarkFixtures.passages(documentCount, passageRepeat);
+    }
+    
+    @Benchmark
+    public ContextAssembler.AssembledContext assemble() {
+        return contextAssembler.assemble("Comment configurer la source de données ?", documents);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.boisvertmathieu.aichatbot.dto.ChatRequest;
+import com.github.boisvertmathieu.aichatbot.dto.ChatResponse;
+import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
+import com.github.boisvertmathieu.aichatbot.repository.ConversationSummaryRepository;
+import com.github.boisvertmathieu.aichatbot.repository.KnowledgeDocumentRepository;
+import com.github.boisvertmathieu.aichatbot.repository.TeamsOutboxRepository;
+import com.github.boisvertmathieu.aichatbot.repository.TokenLedgerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.document.Document;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chemin complet de {@link ChatbotService#processQuestion} avec modèle de chat, embeddings, vector store
+ * et dépôts factices : mesure le coût propre à l'application, hors latence Azure
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProcessQuestionBenchmark {
+    
+    @Param({"false", "true"})
+    private boolean lexicalEnabled;
+    
+    @Param({"false", "true"})
+    private boolean cacheEnabled;
+    
+    private final AtomicLong conversationSequence = new AtomicLong();
+    
+    private ChatbotService chatbotService;
+    
+    @Setup
+    public void setUp() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        List<Document> passages = BenchmarkFixtures.passages(20, 3);
+        ChatModel chatModel = BenchmarkFixtures.chatModel(BenchmarkFixtures.PASSAGE.repeat(3));
+        ConversationRepository conversationRepository = BenchmarkFixtures.repository(ConversationRepository.class);
+        ChatMetrics chatMetrics = new ChatMetrics(meterRegistry);
+        LlmBulkhead llmBulkhead = new LlmBulkhead(meterRegistry, 64, 1000, Duration.ofSeconds(10), Duration.ofSeconds(5));
+        
+        TransactionTemplate transactionTemplate = new TransactionTemplate(BenchmarkFixtures.transactionManager());
+        // Admission désactivée : le registre de tokens n'est pas mesuré ici
+        TokenAdmissionService tokenAdmissionService = new TokenAdmissionService(
+            BenchmarkFixtures.repository(TokenLedgerRepository.class), transactionTemplate, meterRegistry,
+            false, 20000, 20000, 240000, 240000, 5000, 64);
+        
+        LexicalIndex lexicalIndex = new LexicalIndex();
+        lexicalIndex.upsert(passages);
+        
+        HybridRetriever hybridRetriever = new HybridRetriever(BenchmarkFixtures.vectorStore(passages), lexicalIndex, chatMetrics);
+        BenchmarkFixtures.setField(hybridRetriever, "maxResults", 5);
+        BenchmarkFixtures.setField(hybridRetriever, "similarityThreshold", 0.7);
+        BenchmarkFixtures.setField(hybridRetriever, "lexicalEnabled", lexicalEnabled);
+        BenchmarkFixtures.setField(hybridRetriever, "candidates", 20);
+        BenchmarkFixtures.setField(hybridRetriever, "rrfK", 60);
+        BenchmarkFixtures.setField(hybridRetriever, "minFusedScore", 0.016);
+        
+        SemanticAnswerCache semanticAnswerCache = new SemanticAnswerCache(meterRegistry);
+        BenchmarkFixtures.setField(semanticAnswerCache, "enabled", cacheEnabled);
+        BenchmarkFixtures.setField(semanticAnswerCache, "similarityThreshold", 0.95);
+        BenchmarkFixtures.setField(semanticAnswerCache, "maxEntries", 1000);
+        BenchmarkFixtures.setField(semanticAnswerCache, "ttl", Duration.ofHours(1));
+        semanticAnswerCache.registerMetrics();
+        
+        ConversationMemoryService conversationMemoryService = new ConversationMemoryService(
+            conversationRepository, BenchmarkFixtures.repository(ConversationSummaryRepository.class),
+            chatModel, llmBulkhead, tokenAdmissionService, meterRegistry);
+        BenchmarkFixtures.setField(conversationMemoryService, "recentTurns", 4);
+        BenchmarkFixtures.setField(conversationMemoryService, "maxConversations", 1000);
+        BenchmarkFixtures.setField(conversationMemoryService, "summaryMaxWords", 250);
+        
+        TeamsNotificationService teamsNotificationService = new TeamsNotificationService(
+            BenchmarkFixtures.repository(TeamsOutboxRepository.class), new ObjectMapper());
+        BenchmarkFixtures.setField(teamsNotificationService, "teamsMode", "test");
+        BenchmarkFixtures.setField(teamsNotificationService, "testChannelWebhook", "https://example.invalid/webhook");
+        
+        ConversationArchiveService conversationArchiveService = new ConversationArchiveService(
+            conversationRepository, new ObjectMapper(), transactionTemplate, lockConfiguration -> Optional.empty(),
+            false, Duration.ofDays(90),
+            "build/tmp/archive", 1000);
+        StatisticsService statisticsService = new StatisticsService(
+            conversationRepository, BenchmarkFixtures.repository(KnowledgeDocumentRepository.class),
+            conversationArchiveService, meterRegistry);
+        
+        // Écriture synchrone : le benchmark mesure le chemin par défaut
+        ConversationPersistenceService conversationPersistenceService = new ConversationPersistenceService(
+            conversationRepository, teamsNotificationService, statisticsService, new ObjectMapper(),
+            BenchmarkFixtures.transactionManager(), meterRegistry, false, false, 200, 10000, "build/tmp/spill.ndjson");
+        
+        chatbotService = new ChatbotService(
+            chatModel,
+            BenchmarkFixtures.embeddingModel(256),
+            hybridRetriever,
+            conversationRepository,
+            semanticAnswerCache,
+            new ContextAssembler(3000, 50),
+            llmBulkhead,
+            conversationMemoryService,
+            statisticsService,
+            chatMetrics,
+            tokenAdmissionService,
+            conversationPersistenceService);
+        BenchmarkFixtures.setField(chatbotService, "systemMessage", "Vous êtes un assistant de support technique.");
+    }
+    
+    @Benchmark
+    public ChatResponse processQuestion() {
+        // Une nouvelle conversation à chaque appel : premier tour, sans historique
+        return chatbotService.processQuestion(ChatRequest.builder()
+            .conversationId("bench-" + conversationSequence.incrementAndGet())
+            .userId("bench-user")
+            .text("Comment configurer spring.datasource.url ?")
+            .build());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.boisvertmathieu.aichatbot.repository.TeamsOutboxRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction et sérialisation de la carte Teams ajoutée à l'outbox pour chaque réponse
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TeamsCardBenchmark {
+    
+    @Param({"test", "production"})
+    private String teamsMode;
+    
+    private TeamsNotificationService teamsNotificationService;
+    private ObjectMapper objectMapper;
+    private String response;
+    
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        teamsNotificationService = new TeamsNotificationService(
+            BenchmarkFixtures.repository(TeamsOutboxRepository.class), objectMapper);
+        BenchmarkFixtures.setField(teamsNotificationService, "teamsMode", teamsMode);
+        response = BenchmarkFixtures.PASSAGE.repeat(5);
+    }
+    
+    @Benchmark
+    public Map<String, Object> createAdaptiveCard() {
+        return teamsNotificationService.createAdaptiveCard("conversation-123", response, "Test");
+    }
+    
+    @Benchmark
+    public String createAndSerializeAdaptiveCard() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(
+            teamsNotificationService.createAdaptiveCard("conversation-123", response, "Test"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,300 @@
+package com.github.boisvertmathieu.aichatbot.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Générateur de charge pour /api/chat et /api/feedback, sans dépendance hors JDK.
+ * <ul>
+ *     <li>{@code closed} : {@code users} utilisateurs enchaînent leurs conversations sans pause (débit subi)</li>
+ *     <li>{@code open} : les conversations arrivent selon un processus de Poisson à {@code rate}/s (débit imposé) ;
+ *     la latence est mesurée depuis l'instant d'arrivée prévu pour ne pas masquer l'attente (coordinated omission)</li>
+ * </ul>
+ * Usage : {@code ./gradlew loadTest -PloadTestArgs="--mode=open --rate=50 --duration=PT2M"}
+ */
+public final class ChatLoadGenerator {
+    
+    private static final String[] QUESTIONS = {
+        "Comment configurer la source de données en production ?",
+        "Quelle est la taille recommandée du pool de connexions ?",
+        "Comment activer les logs SQL de Hibernate ?",
+        "Où définir les clés de l'API Azure OpenAI ?",
+        "Comment relancer la réindexation complète des documents ?",
+        "Quelle est la procédure pour déployer une nouvelle version ?",
+        "Comment ajouter un document à la base de connaissances ?",
+        "Pourquoi ma requête retourne-t-elle une erreur 503 ?",
+        "Comment changer le canal Teams des notifications ?",
+        "Quelles métriques sont exposées par Actuator ?",
+        "Comment fonctionne le cache sémantique des réponses ?",
+        "Comment limiter la taille du contexte envoyé au modèle ?"
+    };
+    
+    private final Options options;
+    private final HttpClient httpClient;
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    
+    private long measureFrom;
+    private long measureUntil;
+    
+    private ChatLoadGenerator(Options options) {
+        this.options = options;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    }
+    
+    public static void main(String[] args) {
+        Options options = Options.parse(args);
+        System.out.println(options.describe());
+        
+        ChatLoadGenerator generator = new ChatLoadGenerator(options);
+        generator.run();
+        generator.report();
+    }
+    
+    private void run() {
+        long start = System.nanoTime();
+        measureFrom = start + options.warmup().toNanos();
+        measureUntil = measureFrom + options.duration().toNanos();
+        
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (options.open()) {
+                runOpen(executor, start);
+            } else {
+                runClosed(executor);
+            }
+        }
+    }
+    
+    private void runClosed(ExecutorService executor) {
+        for (int user = 0; user < options.users(); user++) {
+            String userId = "loadtest-user-" + user;
+            executor.submit(() -> {
+                while (System.nanoTime() < measureUntil) {
+                    conversation(userId, System.nanoTime());
+                }
+            });
+        }
+    }
+    
+    private void runOpen(ExecutorService executor, long start) {
+        SplittableRandom random = new SplittableRandom();
+        double meanIntervalNanos = 1e9 / options.rate();
+        long next = start;
+        
+        while (next < measureUntil) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            
+            long intendedStart = next;
+            if (inFlight.incrementAndGet() > options.maxInFlight()) {
+                // Le générateur lui-même sature : compté à part pour ne pas fausser les centiles
+                inFlight.decrementAndGet();
+                dropped.increment();
+            } else {
+                String userId = "loadtest-user-" + random.nextInt(options.users());
+                executor.submit(() -> {
+                    try {
+                        conversation(userId, intendedStart);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            }
+            
+            next += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+        }
+    }
+    
+    /**
+     * Une conversation de {@code turns} tours ; seul le premier tour part de l'instant d'arrivée prévu
+     */
+    private void conversation(String userId, long intendedStart) {
+        String conversationId = "loadtest-" + UUID.randomUUID();
+        long turnStart = intendedStart;
+        
+        for (int turn = 0; turn < options.turns(); turn++) {
+            int status = send("/api/chat", turnStart, """
+                {"conversationId":"%s","userId":"%s","text":"%s"}""".formatted(conversationId, userId, question()));
+            
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (status == 200 && random.nextDouble() < options.feedbackRatio()) {
+                send("/api/feedback", System.nanoTime(), """
+                    {"conversationId":"%s","useful":%s}""".formatted(conversationId, random.nextDouble() < 0.8));
+            }
+            
+            if (status != 200) {
+                return;
+            }
+            turnStart = System.nanoTime();
+        }
+    }
+    
+    private String question() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String question = QUESTIONS[random.nextInt(QUESTIONS.length)];
+        // Une partie des questions est rendue unique pour ne pas tout servir depuis le cache sémantique
+        return random.nextDouble() < options.uniqueRatio() ? question + " (cas " + random.nextInt(1_000_000) + ")"
+                                                          : question;
+    }
+    
+    private int send(String path, long intendedStart, String body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(options.baseUrl() + path))
+            .timeout(options.requestTimeout())
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        
+        int status;
+        String outcome;
+        try {
+            status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            outcome = String.valueOf(status);
+        } catch (HttpTimeoutException e) {
+            status = -1;
+            outcome = "timeout";
+        } catch (IOException e) {
+            status = -1;
+            outcome = "io-error";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+        
+        long end = System.nanoTime();
+        if (intendedStart >= measureFrom && intendedStart < measureUntil) {
+            recorders.computeIfAbsent(path, p -> new Recorder()).record(end - intendedStart, outcome);
+        }
+        return status;
+    }
+    
+    private void report() {
+        double seconds = options.duration().toNanos() / 1e9;
+        
+        System.out.println();
+        System.out.printf("%-14s %9s %9s %9s %9s %9s %9s %9s %9s  %s%n",
+                          "endpoint", "requêtes", "débit/s", "2xx/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms",
+                          "max ms", "statuts");
+        new TreeMap<>(recorders).forEach((path, recorder) -> {
+            long[] latencies = recorder.sortedLatencies();
+            long successes = recorder.successes();
+            System.out.printf(Locale.ROOT, "%-14s %9d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                              path, latencies.length, latencies.length / seconds, successes / seconds,
+                              percentile(latencies, 0.50), percentile(latencies, 0.90),
+                              percentile(latencies, 0.99), percentile(latencies, 0.999),
+                              percentile(latencies, 1.0), recorder.outcomes());
+        });
+        
+        if (dropped.sum() > 0) {
+            System.out.printf("%d conversations non envoyées : plus de %d en vol côté générateur%n",
+                              dropped.sum(), options.maxInFlight());
+        }
+    }
+    
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+    
+    private static final class Recorder {
+        
+        private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        private long[] latencies = new long[1024];
+        private int size;
+        
+        synchronized void record(long latencyNanos, String outcome) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+            outcomes.computeIfAbsent(outcome, o -> new LongAdder()).increment();
+        }
+        
+        synchronized long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+        
+        long successes() {
+            return outcomes.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith("2"))
+                .mapToLong(entry -> entry.getValue().sum())
+                .sum();
+        }
+        
+        Map<String, Long> outcomes() {
+            Map<String, Long> counts = new TreeMap<>();
+            outcomes.forEach((outcome, count) -> counts.put(outcome, count.sum()));
+            return counts;
+        }
+    }
+    
+    record Options(String baseUrl, boolean open, int users, double rate, Duration duration, Duration warmup,
+                   int turns, double feedbackRatio, double uniqueRatio, Duration requestTimeout, int maxInFlight) {
+        
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Argument invalide (attendu --clé=valeur) : " + arg);
+                }
+                int separator = arg.indexOf('=');
+                values.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+            
+            String mode = values.getOrDefault("mode", "closed");
+            if (!mode.equals("open") && !mode.equals("closed")) {
+                throw new IllegalArgumentException("--mode doit valoir open ou closed : " + mode);
+            }
+            
+            return new Options(
+                values.getOrDefault("base-url", "http://localhost:8080"),
+                mode.equals("open"),
+                Integer.parseInt(values.getOrDefault("users", "50")),
+                Double.parseDouble(values.getOrDefault("rate", "20")),
+                Duration.parse(values.getOrDefault("duration", "PT60S")),
+                Duration.parse(values.getOrDefault("warmup", "PT10S")),
+                Integer.parseInt(values.getOrDefault("turns", "3")),
+                Double.parseDouble(values.getOrDefault("feedback-ratio", "0.2")),
+                Double.parseDouble(values.getOrDefault("unique-ratio", "0.5")),
+                Duration.parse(values.getOrDefault("request-timeout", "PT30S")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "10000"))
+            );
+        }
+        
+        String describe() {
+            String model = open ? "ouvert, %.1f conversations/s".formatted(rate) : "fermé, %d utilisateurs".formatted(users);
+            return "Charge sur %s : modèle %s, %d tours par conversation, durée %s après %s de chauffe"
+                .formatted(baseUrl, model, turns, duration, warmup);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.github.boisvertmathieu.aichatbot.config;
+
+import com.github.boisvertmathieu.aichatbot.repository.StoredEmbeddingRepository;
+import com.github.boisvertmathieu.aichatbot.service.ContentAddressedEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.azure.openai.AzureOpenAiEmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "chatbot.embedding-store.enabled", havingValue = "true", matchIfMissing = true)
+public class EmbeddingStoreConfiguration {
+    
+    /**
+     * Modèle d'embedding principal, utilisé notamment par le VectorStore : le contenu déjà embarqué
+     * (même hash, même déploiement) n'est jamais renvoyé à Azure OpenAI
+     */
+    @Bean
+    @Primary
+    public EmbeddingModel contentAddressedEmbeddingModel(
+            AzureOpenAiEmbeddingModel azureOpenAiEmbeddingModel,
+            StoredEmbeddingRepository storedEmbeddingRepository,
+            NamedParameterJdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${spring.ai.azure.openai.embedding.options.deployment-name}") String deploymentName,
+            @Value("${chatbot.embedding-store.recent-query-ttl:PT30S}") Duration recentQueryTtl) {
+        return new ContentAddressedEmbeddingModel(azureOpenAiEmbeddingModel, storedEmbeddingRepository,
+                                                  jdbcTemplate, deploymentName, recentQueryTtl, meterRegistry);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.github.boisvertmathieu.aichatbot.config;
+
+import com.github.boisvertmathieu.aichatbot.loadtest.LatencyProfile;
+import com.github.boisvertmathieu.aichatbot.loadtest.SimulatedChatModel;
+import com.github.boisvertmathieu.aichatbot.loadtest.SimulatedEmbeddingModel;
+import com.github.boisvertmathieu.aichatbot.loadtest.SimulatedVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+
+/**
+ * Profil {@code loadtest} : Azure OpenAI et Azure AI Search sont remplacés par des doublures locales
+ * à latence et taux d'erreur configurables ({@code loadtest.*}). Le reste de la chaîne (cache, bulkhead,
+ * assemblage du contexte, base de données, outbox Teams) tourne tel quel, ce qui permet de trouver le
+ * point de saturation du service sans consommer de quota. À ne pas combiner avec {@code local-vector}
+ * ni {@code hot-tier}, qui déclarent aussi un VectorStore principal.
+ */
+@Configuration
+@Profile("loadtest")
+@Slf4j
+public class LoadTestConfiguration {
+    
+    @Bean
+    @Primary
+    public ChatModel simulatedChatModel(
+            @Value("${loadtest.chat.first-token.median:PT0.6S}") Duration median,
+            @Value("${loadtest.chat.first-token.p99:PT2.5S}") Duration p99,
+            @Value("${loadtest.chat.error-rate:0.01}") double errorRate,
+            @Value("${loadtest.chat.inter-token-delay:PT0.015S}") Duration interTokenDelay,
+            @Value("${loadtest.chat.completion-tokens:150}") int completionTokens,
+            @Value("${spring.ai.azure.openai.chat.options.stream-usage:false}") boolean streamUsage) {
+        log.warn("Profil loadtest actif : le modèle de chat est simulé (médiane {}, p99 {}, erreurs {})",
+                 median, p99, errorRate);
+        return new SimulatedChatModel(new LatencyProfile("chat", median, p99, errorRate),
+                                      interTokenDelay, completionTokens, streamUsage);
+    }
+    
+    @Bean
+    @Primary
+    public EmbeddingModel simulatedEmbeddingModel(
+            @Value("${loadtest.embedding.latency.median:PT0.05S}") Duration median,
+            @Value("${loadtest.embedding.latency.p99:PT0.3S}") Duration p99,
+            @Value("${loadtest.embedding.error-rate:0.0}") double errorRate,
+            @Value("${loadtest.embedding.dimensions:1536}") int dimensions) {
+        return new SimulatedEmbeddingModel(new LatencyProfile("embedding", median, p99, errorRate), dimensions);
+    }
+    
+    @Bean
+    @Primary
+    public VectorStore simulatedVectorStore(
+            @Value("${loadtest.vector-store.latency.median:PT0.08S}") Duration median,
+            @Value("${loadtest.vector-store.latency.p99:PT0.4S}") Duration p99,
+            @Value("${loadtest.vector-store.error-rate:0.0}") double errorRate,
+            @Value("${loadtest.vector-store.corpus-size:5000}") int corpusSize,
+            @Value("${loadtest.vector-store.passage-repeat:3}") int passageRepeat) {
+        return new SimulatedVectorStore(new LatencyProfile("vector-store", median, p99, errorRate),
+                                        corpusSize, passageRepeat);
+    }
+}
\ No newline at end of file
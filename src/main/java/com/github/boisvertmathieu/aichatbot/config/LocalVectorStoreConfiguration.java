@@ -0,0 +1,66 @@
+package com.github.boisvertmathieu.aichatbot.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.boisvertmathieu.aichatbot.vectorstore.HnswVectorStore;
+import com.github.boisvertmathieu.aichatbot.vectorstore.TieredVectorStore;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.azure.AzureVectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * VectorStore HNSW en processus, activé par profil :
+ * <ul>
+ *     <li>{@code local-vector} : store principal, sans aller-retour réseau (tests de charge hors ligne)</li>
+ *     <li>{@code hot-tier} : niveau chaud devant Azure AI Search, qui reste la source de vérité</li>
+ * </ul>
+ */
+@Configuration
+@Profile({"local-vector", "hot-tier"})
+public class LocalVectorStoreConfiguration {
+    
+    @Value("${chatbot.vector-store.local.snapshot-directory:./data/hnsw}")
+    private String snapshotDirectory;
+    
+    @Value("${chatbot.vector-store.local.m:16}")
+    private int m;
+    
+    @Value("${chatbot.vector-store.local.ef-construction:200}")
+    private int efConstruction;
+    
+    @Value("${chatbot.vector-store.local.ef-search:64}")
+    private int efSearch;
+    
+    @Value("${chatbot.vector-store.hot-tier.max-staleness:PT15M}")
+    private Duration maxStaleness;
+    
+    @Bean(destroyMethod = "snapshot")
+    @Primary
+    @Profile("local-vector")
+    public HnswVectorStore localVectorStore(EmbeddingModel embeddingModel, ObjectMapper objectMapper) {
+        return createHnswVectorStore(embeddingModel, objectMapper);
+    }
+    
+    @Bean(destroyMethod = "snapshot")
+    @Profile("hot-tier")
+    public HnswVectorStore hotTierVectorStore(EmbeddingModel embeddingModel, ObjectMapper objectMapper) {
+        return createHnswVectorStore(embeddingModel, objectMapper);
+    }
+    
+    @Bean
+    @Primary
+    @Profile("hot-tier")
+    public TieredVectorStore tieredVectorStore(HnswVectorStore hotTierVectorStore, AzureVectorStore azureVectorStore) {
+        return new TieredVectorStore(hotTierVectorStore, azureVectorStore, maxStaleness);
+    }
+    
+    private HnswVectorStore createHnswVectorStore(EmbeddingModel embeddingModel, ObjectMapper objectMapper) {
+        return new HnswVectorStore(embeddingModel, objectMapper, Path.of(snapshotDirectory), m, efConstruction, efSearch);
+    }
+}
\ No newline at end of file
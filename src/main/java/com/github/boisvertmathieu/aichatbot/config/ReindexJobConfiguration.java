@@ -0,0 +1,185 @@
+package com.github.boisvertmathieu.aichatbot.config;
+
+import com.github.boisvertmathieu.aichatbot.entity.KnowledgeDocument;
+import com.github.boisvertmathieu.aichatbot.repository.KnowledgeDocumentRepository;
+import com.github.boisvertmathieu.aichatbot.service.ContentHash;
+import com.github.boisvertmathieu.aichatbot.service.KnowledgeChunkService;
+import com.github.boisvertmathieu.aichatbot.service.SemanticAnswerCache;
+import com.github.boisvertmathieu.aichatbot.service.StatisticsService;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JpaPagingItemReader;
+import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Job Spring Batch de réindexation complète de {@code knowledge_documents} vers le vector store.
+ * La table est partitionnée par plages d'id traitées en parallèle ; chaque partition lit et écrit
+ * par lots, avec reprises et saut des documents en échec, et redémarre depuis son dernier lot validé.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class ReindexJobConfiguration {
+    
+    public static final String JOB_NAME = "reindexKnowledgeDocumentsJob";
+    
+    private final JobRepository jobRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final KnowledgeDocumentRepository knowledgeDocumentRepository;
+    private final KnowledgeChunkService knowledgeChunkService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final StatisticsService statisticsService;
+    
+    @Value("${chatbot.reindex.grid-size:4}")
+    private int gridSize;
+    
+    @Value("${chatbot.reindex.chunk-size:100}")
+    private int chunkSize;
+    
+    @Value("${chatbot.reindex.retry-limit:3}")
+    private int retryLimit;
+    
+    @Value("${chatbot.reindex.skip-limit:100}")
+    private int skipLimit;
+    
+    @Bean
+    public Job reindexKnowledgeDocumentsJob(Step reindexManagerStep) {
+        return new JobBuilder(JOB_NAME, jobRepository)
+            .start(reindexManagerStep)
+            .listener(new JobExecutionListener() {
+                @Override
+                public void afterJob(JobExecution jobExecution) {
+                    if (jobExecution.getStatus() == BatchStatus.COMPLETED) {
+                        semanticAnswerCache.invalidateAll();
+                    }
+                    log.info("Réindexation {} terminée avec le statut {}",
+                             jobExecution.getId(), jobExecution.getStatus());
+                }
+            })
+            .build();
+    }
+    
+    @Bean
+    public Step reindexManagerStep(Step reindexWorkerStep) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("reindex-");
+        taskExecutor.setConcurrencyLimit(gridSize);
+        
+        return new StepBuilder("reindexManagerStep", jobRepository)
+            .partitioner("reindexWorkerStep", idRangePartitioner())
+            .step(reindexWorkerStep)
+            .gridSize(gridSize)
+            .taskExecutor(taskExecutor)
+            .build();
+    }
+    
+    @Bean
+    public Step reindexWorkerStep(JpaPagingItemReader<KnowledgeDocument> reindexReader) {
+        return new StepBuilder("reindexWorkerStep", jobRepository)
+            .<KnowledgeDocument, KnowledgeDocument>chunk(chunkSize, transactionManager)
+            .reader(reindexReader)
+            .writer(reindexWriter())
+            .faultTolerant()
+            .retry(Exception.class)
+            .retryLimit(retryLimit)
+            .skip(Exception.class)
+            .skipLimit(skipLimit)
+            .build();
+    }
+    
+    @Bean
+    @StepScope
+    public JpaPagingItemReader<KnowledgeDocument> reindexReader(
+            @Value("#{stepExecutionContext['minId']}") Long minId,
+            @Value("#{stepExecutionContext['maxId']}") Long maxId) {
+        return new JpaPagingItemReaderBuilder<KnowledgeDocument>()
+            .name("reindexReader")
+            .entityManagerFactory(entityManagerFactory)
+            .queryString("SELECT kd FROM KnowledgeDocument kd WHERE kd.id BETWEEN :minId AND :maxId ORDER BY kd.id")
+            .parameterValues(Map.of("minId", minId, "maxId", maxId))
+            .pageSize(chunkSize)
+            .build();
+    }
+    
+    /**
+     * Découpe l'intervalle [min(id), max(id)] en {@code gridSize} plages contiguës
+     */
+    private Partitioner idRangePartitioner() {
+        return requestedGridSize -> {
+            Long minId = knowledgeDocumentRepository.findMinId();
+            Long maxId = knowledgeDocumentRepository.findMaxId();
+            
+            Map<String, ExecutionContext> partitions = new HashMap<>();
+            
+            if (minId == null || maxId == null) {
+                ExecutionContext context = new ExecutionContext();
+                context.putLong("minId", 0L);
+                context.putLong("maxId", -1L);
+                partitions.put("partition0", context);
+                return partitions;
+            }
+            
+            long rangeSize = Math.max(1, (maxId - minId + requestedGridSize) / requestedGridSize);
+            int index = 0;
+            
+            for (long start = minId; start <= maxId; start += rangeSize) {
+                ExecutionContext context = new ExecutionContext();
+                context.putLong("minId", start);
+                context.putLong("maxId", Math.min(start + rangeSize - 1, maxId));
+                partitions.put("partition" + index++, context);
+            }
+            
+            return partitions;
+        };
+    }
+    
+    private ItemWriter<KnowledgeDocument> reindexWriter() {
+        return chunk -> {
+            List<KnowledgeDocument> documents = new ArrayList<>(chunk.getItems());
+            
+            for (KnowledgeDocument document : documents) {
+                if (document.getEmbeddingHash() == null) {
+                    document.setEmbeddingHash(ContentHash.sha256(document.getContent()));
+                }
+            }
+            
+            knowledgeChunkService.index(documents);
+            
+            statisticsService.onDocumentsIndexed(documents.stream()
+                .filter(document -> !Boolean.TRUE.equals(document.getIndexedInSearch()))
+                .count());
+            
+            LocalDateTime now = LocalDateTime.now();
+            for (KnowledgeDocument document : documents) {
+                document.setIndexedInSearch(true);
+                document.setUpdatedTimestamp(now);
+            }
+            
+            knowledgeDocumentRepository.saveAll(documents);
+        };
+    }
+}
\ No newline at end of file
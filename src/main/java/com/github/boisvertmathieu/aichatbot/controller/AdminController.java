@@ -1,15 +1,36 @@
 package com.github.boisvertmathieu.aichatbot.controller;
 
+import com.github.boisvertmathieu.aichatbot.entity.Conversation;
 import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
 import com.github.boisvertmathieu.aichatbot.repository.KnowledgeDocumentRepository;
+import com.github.boisvertmathieu.aichatbot.service.ConversationArchiveService;
+import com.github.boisvertmathieu.aichatbot.service.ConversationExportService;
+import com.github.boisvertmathieu.aichatbot.service.KnowledgeImportService;
 import com.github.boisvertmathieu.aichatbot.service.KnowledgeIndexingService;
+import com.github.boisvertmathieu.aichatbot.service.ReindexJobService;
+import com.github.boisvertmathieu.aichatbot.service.StatisticsService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -20,20 +41,26 @@ public class AdminController {
     private final ConversationRepository conversationRepository;
     private final KnowledgeDocumentRepository knowledgeDocumentRepository;
     private final KnowledgeIndexingService knowledgeIndexingService;
+    private final ReindexJobService reindexJobService;
+    private final StatisticsService statisticsService;
+    private final ConversationArchiveService conversationArchiveService;
+    private final ConversationExportService conversationExportService;
+    private final KnowledgeImportService knowledgeImportService;
     
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
         
         try {
-            // Statistiques des conversations
-            Long totalConversations = conversationRepository.count();
-            Long positiveFeedback = conversationRepository.countPositiveFeedback();
-            Long negativeFeedback = conversationRepository.countNegativeFeedback();
+            // Compteurs pré-agrégés en mémoire, sans requête d'agrégat sur la base
+            StatisticsService.Statistics statistics = statisticsService.snapshot();
             
-            // Statistiques des documents
-            Long totalDocuments = knowledgeDocumentRepository.count();
-            Long indexedDocuments = knowledgeDocumentRepository.countIndexedDocuments();
+            Long totalConversations = statistics.totalConversations();
+            Long positiveFeedback = statistics.positiveFeedback();
+            Long negativeFeedback = statistics.negativeFeedback();
+            
+            Long totalDocuments = statistics.totalDocuments();
+            Long indexedDocuments = statistics.indexedDocuments();
             
             stats.put("conversations", Map.of(
                 "total", totalConversations,
@@ -48,6 +75,7 @@ public class AdminController {
                 "indexingProgress", calculateIndexingProgress(indexedDocuments, totalDocuments)
             ));
             
+            stats.put("reconciledAt", statistics.reconciledAt() != null ? statistics.reconciledAt().toString() : null);
             stats.put("timestamp", System.currentTimeMillis());
             
             return ResponseEntity.ok(stats);
@@ -86,6 +114,49 @@ public class AdminController {
         }
     }
     
+    /**
+     * Import en masse (JSONL ou zip de markdown) : l'envoi est lu et indexé en tâche de fond,
+     * l'avancement se consulte sur la ressource retournée
+     */
+    @PostMapping(value = "/knowledge/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> importKnowledgeDocuments(
+            @RequestParam MultipartFile file,
+            @RequestParam(defaultValue = "import") String source,
+            @RequestParam(defaultValue = "import") String tags) {
+        
+        try {
+            KnowledgeImportService.ImportStatus status = knowledgeImportService.start(file, source, tags);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Import lancé");
+            response.put("import", status);
+            
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/admin/knowledge/import/" + status.jobId()))
+                .body(response);
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+            
+        } catch (Exception e) {
+            log.error("Erreur lors du lancement de l'import: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("success", false, "message", "Erreur lors du lancement de l'import"));
+        }
+    }
+    
+    @GetMapping("/knowledge/import")
+    public ResponseEntity<Map<String, Object>> getKnowledgeImports() {
+        return ResponseEntity.ok(Map.of("imports", knowledgeImportService.statuses()));
+    }
+    
+    @GetMapping("/knowledge/import/{jobId}")
+    public ResponseEntity<Map<String, Object>> getKnowledgeImport(@PathVariable String jobId) {
+        return knowledgeImportService.status(jobId)
+            .map(status -> ResponseEntity.ok(Map.<String, Object>of("import", status)))
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
     @PostMapping("/index/trigger")
     public ResponseEntity<Map<String, Object>> triggerIndexing() {
         try {
@@ -111,6 +182,166 @@ public class AdminController {
         }
     }
     
+    @PostMapping("/index/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildIndex() {
+        try {
+            JobExecution execution = reindexJobService.launch();
+            
+            Map<String, Object> response = toReindexStatus(execution);
+            response.put("success", true);
+            response.put("message", "Réindexation complète lancée");
+            
+            return ResponseEntity.accepted().body(response);
+            
+        } catch (IllegalStateException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            
+        } catch (Exception e) {
+            log.error("Erreur lors du lancement de la réindexation: {}", e.getMessage(), e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Erreur lors du lancement de la réindexation: " + e.getMessage());
+            
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    @PostMapping("/index/rebuild/{executionId}/restart")
+    public ResponseEntity<Map<String, Object>> restartIndexRebuild(@PathVariable long executionId) {
+        try {
+            JobExecution execution = reindexJobService.restart(executionId);
+            
+            Map<String, Object> response = toReindexStatus(execution);
+            response.put("success", true);
+            response.put("message", "Réindexation relancée depuis le dernier lot validé");
+            
+            return ResponseEntity.accepted().body(response);
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+            
+        } catch (IllegalStateException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            
+        } catch (Exception e) {
+            log.error("Erreur lors de la relance de la réindexation: {}", e.getMessage(), e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Erreur lors de la relance de la réindexation: " + e.getMessage());
+            
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    @GetMapping("/index/rebuild/{executionId}")
+    public ResponseEntity<Map<String, Object>> getIndexRebuildStatus(@PathVariable long executionId) {
+        return reindexJobService.findExecution(executionId)
+            .map(execution -> ResponseEntity.ok(toReindexStatus(execution)))
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Export NDJSON (éventuellement gzip) des conversations d'une période, écrit directement dans la réponse.
+     * Les tours déjà archivés précèdent ceux encore en table.
+     * Exécuté de façon synchrone sur le thread virtuel de la requête : aucun délai asynchrone ne l'interrompt.
+     */
+    @GetMapping("/conversations/export")
+    public void exportConversations(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        
+        if (from.isAfter(to)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "from doit précéder to");
+            return;
+        }
+        
+        String fileName = "conversations-" + from.toLocalDate() + "-" + to.toLocalDate() + (gzip ? ".ndjson.gz" : ".ndjson");
+        response.setContentType(gzip ? "application/gzip" : "application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        
+        OutputStream output = gzip ? new GZIPOutputStream(response.getOutputStream(), 8192) : response.getOutputStream();
+        try {
+            conversationExportService.export(from, to, output);
+        } catch (Exception e) {
+            // La réponse est déjà partiellement envoyée : le client voit un flux tronqué
+            log.error("Export des conversations interrompu: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+    
+    @GetMapping("/archive")
+    public ResponseEntity<Map<String, Object>> getArchive() {
+        try {
+            List<ConversationArchiveService.ArchiveSegment> segments = conversationArchiveService.segments();
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("segments", segments);
+            response.put("totals", conversationArchiveService.totals());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Erreur lors de la lecture de l'index de l'archive: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Erreur lors de la lecture de l'archive"));
+        }
+    }
+    
+    /**
+     * Relecture à la demande de l'archive froide, par intervalle de dates ou par conversation
+     */
+    @GetMapping("/archive/conversations")
+    public ResponseEntity<Map<String, Object>> getArchivedConversations(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String conversationId,
+            @RequestParam(defaultValue = "1000") int limit) {
+        
+        if (conversationId == null && (from == null || to == null)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "conversationId ou from et to sont requis"));
+        }
+        
+        try {
+            List<Conversation> conversations = conversationId != null
+                ? conversationArchiveService.readArchivedConversation(conversationId)
+                : conversationArchiveService.readArchived(from, to, limit);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("conversations", conversations);
+            response.put("count", conversations.size());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Erreur lors de la lecture de l'archive: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Erreur lors de la lecture de l'archive"));
+        }
+    }
+    
+    @PostMapping("/archive/run")
+    public ResponseEntity<Map<String, Object>> runArchive() {
+        int archived = conversationArchiveService.archiveOldConversations();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("archived", archived);
+        response.put("timestamp", System.currentTimeMillis());
+        
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
         Map<String, Object> health = new HashMap<>();
@@ -139,6 +370,32 @@ public class AdminController {
         }
     }
     
+    private Map<String, Object> toReindexStatus(JobExecution execution) {
+        long readCount = 0;
+        long writeCount = 0;
+        long skipCount = 0;
+        
+        for (StepExecution stepExecution : execution.getStepExecutions()) {
+            // Les compteurs sont portés par les partitions, pas par l'étape maître
+            if (stepExecution.getStepName().startsWith("reindexWorkerStep")) {
+                readCount += stepExecution.getReadCount();
+                writeCount += stepExecution.getWriteCount();
+                skipCount += stepExecution.getSkipCount();
+            }
+        }
+        
+        Map<String, Object> status = new HashMap<>();
+        status.put("jobExecutionId", execution.getId());
+        status.put("status", execution.getStatus().toString());
+        status.put("readCount", readCount);
+        status.put("writeCount", writeCount);
+        status.put("skipCount", skipCount);
+        status.put("startTime", execution.getStartTime());
+        status.put("endTime", execution.getEndTime());
+        
+        return status;
+    }
+    
     private double calculateSatisfactionRate(Long positive, Long negative) {
         if (positive == null) positive = 0L;
         if (negative == null) negative = 0L;
@@ -2,16 +2,30 @@ package com.github.boisvertmathieu.aichatbot.controller;
 
 import com.github.boisvertmathieu.aichatbot.dto.ChatRequest;
 import com.github.boisvertmathieu.aichatbot.dto.ChatResponse;
+import com.github.boisvertmathieu.aichatbot.dto.FeedbackBatchRequest;
 import com.github.boisvertmathieu.aichatbot.dto.FeedbackRequest;
 import com.github.boisvertmathieu.aichatbot.service.ChatbotService;
+import com.github.boisvertmathieu.aichatbot.service.FeedbackBatchService;
+import com.github.boisvertmathieu.aichatbot.service.LlmBulkhead;
+import com.github.boisvertmathieu.aichatbot.service.TokenAdmissionService;
+import com.github.boisvertmathieu.aichatbot.service.TokenAdmissionService.TokenBudgetExceededException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
@@ -21,12 +35,17 @@ import java.util.Map;
 public class ChatController {
     
     private final ChatbotService chatbotService;
+    private final TokenAdmissionService tokenAdmissionService;
+    private final FeedbackBatchService feedbackBatchService;
     
     @PostMapping("/chat")
     public ResponseEntity<ChatResponse> processQuestion(@Valid @RequestBody ChatRequest request) {
         log.info("Réception d'une nouvelle question pour conversationId: {}", request.getConversationId());
         
         try {
+            // Rejet avant tout travail (embedding, recherche, base) si le budget de tokens est épuisé
+            tokenAdmissionService.admit(request.getUserId());
+            
             ChatResponse response = chatbotService.processQuestion(request);
             
             if (response.isSuccess()) {
@@ -35,6 +54,35 @@ public class ChatController {
                 return ResponseEntity.internalServerError().body(response);
             }
             
+        } catch (LlmBulkhead.BulkheadFullException e) {
+            log.warn("Question rejetée pour conversationId {}: capacité Azure OpenAI saturée", request.getConversationId());
+            
+            ChatResponse busyResponse = ChatResponse.builder()
+                .conversationId(request.getConversationId())
+                .success(false)
+                .errorMessage(e.getMessage())
+                .timestamp(LocalDateTime.now())
+                .build();
+            
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(e.getRetryAfter())))
+                .body(busyResponse);
+            
+        } catch (TokenBudgetExceededException e) {
+            log.warn("Question rejetée pour conversationId {}: budget de tokens {} épuisé", 
+                     request.getConversationId(), e.getScope());
+            
+            ChatResponse limitedResponse = ChatResponse.builder()
+                .conversationId(request.getConversationId())
+                .success(false)
+                .errorMessage(e.getMessage())
+                .timestamp(LocalDateTime.now())
+                .build();
+            
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(e.getRetryAfter())))
+                .body(limitedResponse);
+            
         } catch (Exception e) {
             log.error("Erreur lors du traitement de la question: {}", e.getMessage(), e);
             
@@ -48,6 +96,32 @@ public class ChatController {
         }
     }
     
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamQuestion(@Valid @RequestBody ChatRequest request) {
+        log.info("Réception d'une nouvelle question en flux pour conversationId: {}", request.getConversationId());
+        
+        return Flux.defer(() -> {
+                tokenAdmissionService.admit(request.getUserId());
+                return chatbotService.streamQuestion(request);
+            })
+            .map(token -> ServerSentEvent.builder(token).event("token").build())
+            .concatWithValues(ServerSentEvent.builder(request.getConversationId()).event("done").build())
+            .onErrorResume(LlmBulkhead.BulkheadFullException.class, e -> Flux.just(ServerSentEvent
+                .builder(e.getMessage())
+                .event("busy")
+                .retry(e.getRetryAfter())
+                .build()))
+            .onErrorResume(TokenBudgetExceededException.class, e -> Flux.just(ServerSentEvent
+                .builder(e.getMessage())
+                .event("rate-limited")
+                .retry(e.getRetryAfter())
+                .build()))
+            .onErrorResume(e -> Flux.just(ServerSentEvent
+                .builder("Erreur lors du traitement de votre question: " + e.getMessage())
+                .event("error")
+                .build()));
+    }
+    
     @PostMapping("/feedback")
     public ResponseEntity<Map<String, Object>> processFeedback(@Valid @RequestBody FeedbackRequest request) {
         log.info("Réception d'un feedback pour conversationId: {}", request.getConversationId());
@@ -82,6 +156,46 @@ public class ChatController {
         }
     }
     
+    /**
+     * Feedbacks en masse (carte Teams, outil de revue) : appliqués par paquets ensemblistes,
+     * avec un statut par élément plutôt qu'un aller-retour par feedback
+     */
+    @PostMapping("/feedback/batch")
+    public ResponseEntity<Map<String, Object>> processFeedbackBatch(@Valid @RequestBody FeedbackBatchRequest request) {
+        log.info("Réception d'un lot de {} feedbacks", request.getItems().size());
+        
+        try {
+            List<FeedbackBatchService.ItemResult> results = feedbackBatchService.apply(request.getItems());
+            Map<FeedbackBatchService.Status, Long> counts = results.stream()
+                .collect(Collectors.groupingBy(FeedbackBatchService.ItemResult::status, Collectors.counting()));
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", !counts.containsKey(FeedbackBatchService.Status.FAILED));
+            response.put("total", results.size());
+            response.put("applied", counts.getOrDefault(FeedbackBatchService.Status.APPLIED, 0L));
+            response.put("counts", counts);
+            response.put("results", results);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Erreur lors du traitement du lot de feedbacks: {}", e.getMessage(), e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Erreur interne du serveur");
+            
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * Arrondi à la seconde supérieure : un client qui réessaie après ce délai trouve un seau positif
+     */
+    private static long retryAfterSeconds(Duration retryAfter) {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
         Map<String, Object> health = new HashMap<>();
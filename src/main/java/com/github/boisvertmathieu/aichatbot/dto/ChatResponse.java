@@ -18,6 +18,7 @@ public class ChatResponse {
     private String response;
     private List<String> retrievedDocumentIds;
     private Integer tokensUsed;
+    private boolean cached;
     private LocalDateTime timestamp;
     private boolean success;
     private String errorMessage;
@@ -0,0 +1,25 @@
+package com.github.boisvertmathieu.aichatbot.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Lot de feedbacks ; chaque élément est validé individuellement par le service, pour qu'un élément
+ * invalide n'empêche pas d'appliquer les autres
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedbackBatchRequest {
+    
+    @NotEmpty(message = "items est requis")
+    @Size(max = 10000, message = "10000 feedbacks au plus par lot")
+    private List<FeedbackRequest> items;
+}
\ No newline at end of file
@@ -8,21 +8,36 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
+/**
+ * Un tour (question/réponse) d'une conversation ; une conversation compte autant de lignes que de tours
+ */
 @Entity
-@Table(name = "conversations")
+@Table(name = "conversations", 
+       uniqueConstraints = @UniqueConstraint(name = "uk_conversations_turn", columnNames = {"conversation_id", "turn_index"}),
+       indexes = {
+           @Index(name = "idx_conversations_conversation_id", columnList = "conversation_id"),
+           @Index(name = "idx_conversations_timestamp", columnList = "timestamp")
+       })
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Conversation {
     
+    // Séquence allouée par blocs de 50 : les identifiants sont connus sans aller-retour, ce qui permet
+    // à Hibernate de grouper les inserts (impossible avec IDENTITY)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "conversations_seq")
+    @SequenceGenerator(name = "conversations_seq", sequenceName = "conversations_seq", allocationSize = 50)
     private Long id;
     
-    @Column(name = "conversation_id", nullable = false, unique = true)
+    @Column(name = "conversation_id", nullable = false)
     private String conversationId;
     
+    // Null pour les conversations enregistrées avant le support multi-tours, considérées comme le tour 0
+    @Column(name = "turn_index")
+    private Integer turnIndex;
+    
     @Column(name = "user_id", nullable = false)
     private String userId;
     
@@ -50,8 +65,15 @@ public class Conversation {
     @Column(name = "feedback_timestamp")
     private LocalDateTime feedbackTimestamp;
     
+    // Réponse corrigée existante dans laquelle la correction a été fusionnée (quasi-doublon)
+    @Column(name = "correction_merged_into")
+    private String correctionMergedInto;
+    
     @PrePersist
     protected void onCreate() {
-        timestamp = LocalDateTime.now();
+        // Conservé s'il est déjà renseigné : en write-behind, l'insertion suit la réponse de quelques instants
+        if (timestamp == null) {
+            timestamp = LocalDateTime.now();
+        }
     }
 } 
\ No newline at end of file
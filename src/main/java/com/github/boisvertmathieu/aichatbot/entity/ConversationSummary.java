@@ -0,0 +1,40 @@
+package com.github.boisvertmathieu.aichatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Résumé glissant des tours les plus anciens d'une conversation, envoyé au modèle à la place de ces tours
+ */
+@Entity
+@Table(name = "conversation_summaries")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummary {
+    
+    @Id
+    @Column(name = "conversation_id", nullable = false)
+    private String conversationId;
+    
+    @Column(name = "summary", nullable = false, columnDefinition = "TEXT")
+    private String summary;
+    
+    @Column(name = "summarized_through_turn", nullable = false)
+    private int summarizedThroughTurn;
+    
+    @Column(name = "updated_timestamp", nullable = false)
+    private LocalDateTime updatedTimestamp;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedTimestamp = LocalDateTime.now();
+    }
+}
\ No newline at end of file
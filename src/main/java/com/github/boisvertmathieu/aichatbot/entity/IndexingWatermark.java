@@ -0,0 +1,37 @@
+package com.github.boisvertmathieu.aichatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Point de reprise persisté d'un traitement incrémental (high-water mark)
+ */
+@Entity
+@Table(name = "indexing_watermarks")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexingWatermark {
+    
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+    
+    @Column(name = "watermark", nullable = false)
+    private LocalDateTime watermark;
+    
+    @Column(name = "updated_timestamp")
+    private LocalDateTime updatedTimestamp;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedTimestamp = LocalDateTime.now();
+    }
+}
\ No newline at end of file
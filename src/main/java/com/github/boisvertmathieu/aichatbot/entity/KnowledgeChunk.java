@@ -0,0 +1,56 @@
+package com.github.boisvertmathieu.aichatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Passage d'un {@link KnowledgeDocument}, embarqué et indexé séparément dans le vector store
+ */
+@Entity
+@Table(name = "knowledge_chunks", indexes = {
+    @Index(name = "idx_knowledge_chunks_document_id", columnList = "document_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnowledgeChunk {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "chunk_id", nullable = false, unique = true)
+    private String chunkId;
+    
+    @Column(name = "document_id", nullable = false)
+    private String documentId;
+    
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+    
+    @Column(name = "content", nullable = false, columnDefinition = "TEXT")
+    private String content;
+    
+    @Column(name = "start_offset", nullable = false)
+    private int startOffset;
+    
+    @Column(name = "end_offset", nullable = false)
+    private int endOffset;
+    
+    @Column(name = "embedding_hash", length = 64)
+    private String embeddingHash;
+    
+    @Column(name = "created_timestamp", nullable = false)
+    private LocalDateTime createdTimestamp;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdTimestamp = LocalDateTime.now();
+    }
+}
\ No newline at end of file
@@ -38,6 +38,10 @@ public class KnowledgeDocument {
     @Column(name = "embedding_hash")
     private String embeddingHash;
     
+    // Signature MinHash (base64) des réponses corrigées, pour écarter les quasi-doublons avant indexation
+    @Column(name = "minhash_signature", columnDefinition = "TEXT")
+    private String minhashSignature;
+    
     @Column(name = "indexed_in_search")
     private Boolean indexedInSearch = false;
     
@@ -0,0 +1,66 @@
+package com.github.boisvertmathieu.aichatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Embedding persisté, adressé par le hash SHA-256 du contenu embarqué
+ * (le même que {@link KnowledgeDocument#getEmbeddingHash()}).
+ * L'identifiant étant attribué, {@link #isNew()} évite le SELECT préalable de {@code merge} à l'insertion.
+ */
+@Entity
+@Table(name = "document_embeddings")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredEmbedding implements Persistable<String> {
+    
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    @Column(name = "model", nullable = false, length = 200)
+    private String model;
+    
+    @Column(name = "dimensions", nullable = false)
+    private int dimensions;
+    
+    @Lob
+    @Column(name = "vector", nullable = false)
+    private byte[] vector;
+    
+    @Column(name = "created_timestamp", nullable = false)
+    private LocalDateTime createdTimestamp;
+    
+    @Transient
+    @Builder.Default
+    private boolean newEntity = true;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdTimestamp = LocalDateTime.now();
+    }
+    
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        newEntity = false;
+    }
+    
+    @Override
+    public String getId() {
+        return contentHash;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+}
\ No newline at end of file
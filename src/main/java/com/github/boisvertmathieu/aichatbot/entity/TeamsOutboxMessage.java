@@ -0,0 +1,70 @@
+package com.github.boisvertmathieu.aichatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Message Teams en attente d'envoi (outbox transactionnelle).
+ * Écrit dans la même transaction que la conversation, puis livré par {@code TeamsOutboxDispatcher}.
+ */
+@Entity
+@Table(name = "teams_outbox", indexes = {
+    @Index(name = "idx_teams_outbox_status_next_attempt", columnList = "status, next_attempt_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TeamsOutboxMessage {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "conversation_id")
+    private String conversationId;
+    
+    @Column(name = "webhook_url", nullable = false, length = 1000)
+    private String webhookUrl;
+    
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status;
+    
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+    
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "created_timestamp", nullable = false)
+    private LocalDateTime createdTimestamp;
+    
+    @Column(name = "sent_timestamp")
+    private LocalDateTime sentTimestamp;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdTimestamp = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdTimestamp;
+        }
+    }
+    
+    public enum Status {
+        PENDING,
+        SENT,
+        FAILED
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.github.boisvertmathieu.aichatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cumul des tokens LLM consommés par un utilisateur (ou par tout le service, clé {@code *}), alimenté
+ * par chaque instance : l'écart entre deux lectures donne la consommation des autres instances
+ */
+@Entity
+@Table(name = "token_ledger", indexes = {
+    @Index(name = "idx_token_ledger_updated", columnList = "updated_timestamp")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenLedgerEntry {
+    
+    @Id
+    @Column(name = "ledger_key")
+    private String ledgerKey;
+    
+    @Column(name = "consumed_tokens", nullable = false)
+    private Long consumedTokens;
+    
+    @Column(name = "updated_timestamp", nullable = false)
+    private LocalDateTime updatedTimestamp;
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.github.boisvertmathieu.aichatbot.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution de latence log-normale décrite par sa médiane et son 99e centile, avec un taux d'erreur.
+ * Une queue lourde plutôt qu'un délai fixe : c'est elle qui fait monter la concurrence réelle sous charge.
+ */
+public final class LatencyProfile {
+    
+    /** Quantile 0,99 de la loi normale centrée réduite */
+    private static final double Z_99 = 2.326348;
+    
+    private final String name;
+    private final double mu;
+    private final double sigma;
+    private final long maxNanos;
+    private final double errorRate;
+    
+    public LatencyProfile(String name, Duration median, Duration p99, double errorRate) {
+        if (median.isNegative() || p99.compareTo(median) < 0) {
+            throw new IllegalArgumentException("Latence invalide pour " + name + " : médiane " + median + ", p99 " + p99);
+        }
+        this.name = name;
+        this.mu = Math.log(Math.max(1, median.toNanos()));
+        this.sigma = median.isZero() ? 0 : Math.log((double) p99.toNanos() / median.toNanos()) / Z_99;
+        this.maxNanos = p99.toNanos() * 3;
+        this.errorRate = errorRate;
+    }
+    
+    public Duration sample() {
+        if (maxNanos == 0) {
+            return Duration.ZERO;
+        }
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        long nanos = (long) Math.exp(mu + sigma * gaussian);
+        return Duration.ofNanos(Math.min(nanos, maxNanos));
+    }
+    
+    /**
+     * Attend une latence tirée de la distribution puis échoue selon le taux d'erreur configuré
+     */
+    public void await() {
+        pause(sample());
+        failRandomly();
+    }
+    
+    public void failRandomly() {
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            throw new SimulatedFailureException("Erreur simulée (" + name + ")");
+        }
+    }
+    
+    static void pause(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SimulatedFailureException("Attente interrompue");
+        }
+    }
+    
+    public static class SimulatedFailureException extends RuntimeException {
+        
+        public SimulatedFailureException(String message) {
+            super(message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.github.boisvertmathieu.aichatbot.loadtest;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Modèle de chat simulé pour les tests de charge : aucun appel à Azure OpenAI.
+ * La latence du premier token suit un {@link LatencyProfile}, puis chaque token de complétion coûte
+ * {@code interTokenDelay}. Les tokens du prompt sont estimés à partir de sa taille (≈ 4 caractères par token).
+ * Comme Azure OpenAI, l'usage n'accompagne le dernier fragment d'une réponse en flux qu'avec {@code streamUsage}.
+ */
+public class SimulatedChatModel implements ChatModel {
+    
+    private static final String[] WORDS = {
+        "Pour", "configurer", "le", "service,", "définissez", "la", "propriété", "dans", "le", "fichier",
+        "application.properties", "puis", "redémarrez", "l'application.", "Consultez", "la", "documentation",
+        "interne", "pour", "les", "valeurs", "recommandées", "en", "production."
+    };
+    
+    private final LatencyProfile firstTokenLatency;
+    private final Duration interTokenDelay;
+    private final int completionTokens;
+    private final boolean streamUsage;
+    
+    public SimulatedChatModel(LatencyProfile firstTokenLatency, Duration interTokenDelay, int completionTokens,
+                              boolean streamUsage) {
+        this.firstTokenLatency = firstTokenLatency;
+        this.interTokenDelay = interTokenDelay;
+        this.completionTokens = completionTokens;
+        this.streamUsage = streamUsage;
+    }
+    
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        List<String> tokens = completion();
+        firstTokenLatency.await();
+        LatencyProfile.pause(interTokenDelay.multipliedBy(tokens.size()));
+        
+        return response(String.join("", tokens), usage(prompt, tokens.size()));
+    }
+    
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        List<String> tokens = completion();
+        int last = streamUsage ? tokens.size() - 1 : -1;
+        
+        Flux<ChatResponse> chunks = Flux.range(0, tokens.size())
+            .delayElements(interTokenDelay)
+            .map(i -> response(tokens.get(i), i == last ? usage(prompt, tokens.size()) : null));
+        
+        // Le premier token attend la latence tirée ; l'échec éventuel survient avant tout contenu, comme un 429/500
+        return Mono.fromRunnable(firstTokenLatency::failRandomly)
+            .delaySubscription(firstTokenLatency.sample())
+            .thenMany(chunks);
+    }
+    
+    private List<String> completion() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int count = Math.max(1, (int) (completionTokens * (0.75 + random.nextDouble() * 0.5)));
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add((i == 0 ? "" : " ") + WORDS[random.nextInt(WORDS.length)]);
+        }
+        return tokens;
+    }
+    
+    private DefaultUsage usage(Prompt prompt, int generatedTokens) {
+        int promptTokens = Math.max(1, prompt.getContents().length() / 4);
+        return new DefaultUsage(promptTokens, generatedTokens);
+    }
+    
+    private ChatResponse response(String text, DefaultUsage usage) {
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().model("simulated");
+        if (usage != null) {
+            metadata.usage(usage);
+        }
+        return ChatResponse.builder()
+            .generations(List.of(new Generation(new AssistantMessage(text))))
+            .metadata(metadata.build())
+            .build();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.github.boisvertmathieu.aichatbot.loadtest;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Modèle d'embedding simulé : un vecteur normalisé dérivé du hash du texte, donc stable d'un appel à
+ * l'autre (le cache sémantique se comporte comme en production pour des questions identiques).
+ * Un appel par lot attend une seule latence, comme un appel HTTP groupé à Azure OpenAI.
+ */
+public class SimulatedEmbeddingModel implements EmbeddingModel {
+    
+    private final LatencyProfile latency;
+    private final int dimensions;
+    
+    public SimulatedEmbeddingModel(LatencyProfile latency, int dimensions) {
+        this.latency = latency;
+        this.dimensions = dimensions;
+    }
+    
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        latency.await();
+        
+        List<Embedding> embeddings = new ArrayList<>(request.getInstructions().size());
+        for (int i = 0; i < request.getInstructions().size(); i++) {
+            embeddings.add(new Embedding(vector(request.getInstructions().get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+    
+    @Override
+    public float[] embed(Document document) {
+        latency.await();
+        return vector(document.getText());
+    }
+    
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+    
+    private float[] vector(String text) {
+        SplittableRandom random = new SplittableRandom(text == null ? 0 : text.hashCode());
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
\ No newline at end of file
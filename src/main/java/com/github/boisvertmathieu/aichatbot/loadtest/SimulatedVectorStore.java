@@ -0,0 +1,75 @@
+package com.github.boisvertmathieu.aichatbot.loadtest;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * VectorStore simulé : les passages sont tirés d'un corpus synthétique de {@code corpusSize} documents,
+ * de façon déterministe selon la requête, avec des scores décroissants. Les écritures ne font qu'attendre
+ * la latence configurée : l'indexation reste exerçable sans Azure AI Search.
+ */
+public class SimulatedVectorStore implements VectorStore {
+    
+    private static final String PASSAGE = "Pour configurer une source de données, définissez spring.datasource.url, "
+        + "spring.datasource.username et spring.datasource.password dans application.properties. "
+        + "Spring Boot crée alors automatiquement un pool de connexions HikariCP dont la taille se règle avec "
+        + "spring.datasource.hikari.maximum-pool-size. ";
+    
+    private final LatencyProfile latency;
+    private final int corpusSize;
+    private final int passageRepeat;
+    
+    public SimulatedVectorStore(LatencyProfile latency, int corpusSize, int passageRepeat) {
+        this.latency = latency;
+        this.corpusSize = corpusSize;
+        this.passageRepeat = passageRepeat;
+    }
+    
+    @Override
+    public void add(List<Document> documents) {
+        latency.await();
+    }
+    
+    @Override
+    public void delete(List<String> idList) {
+        latency.await();
+    }
+    
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        latency.await();
+    }
+    
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        latency.await();
+        
+        SplittableRandom random = new SplittableRandom(request.getQuery().hashCode());
+        List<Document> results = new ArrayList<>(request.getTopK());
+        double score = 0.92 - random.nextDouble() * 0.1;
+        for (int i = 0; i < request.getTopK() && score >= request.getSimilarityThreshold(); i++) {
+            int documentNumber = random.nextInt(corpusSize);
+            String documentId = "loadtest-" + documentNumber;
+            results.add(Document.builder()
+                .id(documentId + "-chunk-0")
+                .text(documentNumber + " " + PASSAGE.repeat(passageRepeat))
+                .metadata(Map.of("id", documentId, "title", "Document simulé " + documentNumber))
+                .score(score)
+                .build());
+            score -= 0.01 + random.nextDouble() * 0.03;
+        }
+        return results;
+    }
+    
+    @Override
+    public String getName() {
+        return "SimulatedVectorStore";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.github.boisvertmathieu.aichatbot.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Webhook Teams local pour le profil {@code loadtest} : l'outbox livre ici au lieu de Microsoft Teams,
+ * avec une latence et un taux d'erreur simulés pour exercer les reprises.
+ */
+@RestController
+@RequestMapping("/loadtest/teams")
+@Profile("loadtest")
+@Slf4j
+public class TeamsSinkController {
+    
+    private final LatencyProfile latency;
+    private final Map<String, AtomicLong> received = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+    
+    public TeamsSinkController(@Value("${loadtest.teams.latency.median:PT0.15S}") Duration median,
+                               @Value("${loadtest.teams.latency.p99:PT1S}") Duration p99,
+                               @Value("${loadtest.teams.error-rate:0.0}") double errorRate) {
+        this.latency = new LatencyProfile("teams", median, p99, errorRate);
+    }
+    
+    @PostMapping("/{channel}")
+    public ResponseEntity<Void> receive(@PathVariable String channel, @RequestBody(required = false) String card) {
+        try {
+            latency.await();
+        } catch (LatencyProfile.SimulatedFailureException e) {
+            rejected.incrementAndGet();
+            return ResponseEntity.status(503).build();
+        }
+        
+        received.computeIfAbsent(channel, c -> new AtomicLong()).incrementAndGet();
+        return ResponseEntity.ok().build();
+    }
+    
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> statistics() {
+        Map<String, Long> counts = new ConcurrentHashMap<>();
+        received.forEach((channel, count) -> counts.put(channel, count.get()));
+        return ResponseEntity.ok(Map.of(
+            "received", counts,
+            "rejected", rejected.get()
+        ));
+    }
+}
\ No newline at end of file
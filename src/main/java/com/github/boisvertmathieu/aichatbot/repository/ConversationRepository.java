@@ -1,31 +1,89 @@
 package com.github.boisvertmathieu.aichatbot.repository;
 
 import com.github.boisvertmathieu.aichatbot.entity.Conversation;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
     
-    Optional<Conversation> findByConversationId(String conversationId);
+    /**
+     * Dernier tour de la conversation, auquel s'applique le feedback. Les identifiants étant alloués
+     * par blocs propres à chaque instance, l'ordre est celui des tours et non des identifiants.
+     */
+    Optional<Conversation> findFirstByConversationIdOrderByTurnIndexDesc(String conversationId);
+    
+    /**
+     * Index du dernier tour enregistré, lu sur l'index unique (conversation_id, turn_index) sans charger le tour
+     */
+    @Query("SELECT MAX(COALESCE(c.turnIndex, 0)) FROM Conversation c WHERE c.conversationId = :conversationId")
+    Integer findMaxTurnIndex(@Param("conversationId") String conversationId);
+    
+    @Query("SELECT c FROM Conversation c WHERE c.conversationId = :conversationId " +
+           "AND COALESCE(c.turnIndex, 0) > :afterTurn ORDER BY COALESCE(c.turnIndex, 0) DESC")
+    List<Conversation> findRecentTurns(@Param("conversationId") String conversationId, 
+                                       @Param("afterTurn") int afterTurn, 
+                                       Pageable pageable);
     
     List<Conversation> findByUserId(String userId);
     
     @Query("SELECT c FROM Conversation c WHERE c.feedbackUseful = true AND c.correctedResponse IS NOT NULL")
     List<Conversation> findConversationsWithCorrectFeedback();
     
+    @Query("SELECT c FROM Conversation c WHERE c.feedbackUseful = true AND c.correctedResponse IS NOT NULL " +
+           "AND c.feedbackTimestamp > :since ORDER BY c.feedbackTimestamp, c.id")
+    Slice<Conversation> findConversationsWithCorrectFeedbackSince(@Param("since") LocalDateTime since, Pageable pageable);
+    
     @Query("SELECT c FROM Conversation c WHERE c.timestamp BETWEEN :startDate AND :endDate")
     List<Conversation> findConversationsByDateRange(
         @Param("startDate") LocalDateTime startDate, 
         @Param("endDate") LocalDateTime endDate
     );
     
+    /**
+     * Variante en flux pour les exports, à consommer dans une transaction puis à fermer.
+     * Le pilote SQL Server lit le résultat au fil de l'eau (responseBuffering=adaptive, par défaut).
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT c FROM Conversation c WHERE c.timestamp BETWEEN :startDate AND :endDate ORDER BY c.timestamp, c.id")
+    Stream<Conversation> streamByDateRange(@Param("startDate") LocalDateTime startDate,
+                                           @Param("endDate") LocalDateTime endDate);
+    
+    /**
+     * Tours les plus anciens, à archiver (index sur timestamp)
+     */
+    @Query("SELECT c FROM Conversation c WHERE c.timestamp < :cutoff ORDER BY c.timestamp, c.id")
+    List<Conversation> findOlderThan(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+    
+    @Query("SELECT COUNT(c) FROM Conversation c WHERE c.id IN :ids")
+    long countByIds(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("UPDATE Conversation c SET c.correctionMergedInto = :documentId WHERE c.id = :id")
+    int markCorrectionMerged(@Param("id") Long id, @Param("documentId") String documentId);
+    
+    @Modifying
+    @Query("DELETE FROM Conversation c WHERE c.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+    
     @Query("SELECT COUNT(c) FROM Conversation c WHERE c.feedbackUseful = true")
     Long countPositiveFeedback();
     
@@ -0,0 +1,9 @@
+package com.github.boisvertmathieu.aichatbot.repository;
+
+import com.github.boisvertmathieu.aichatbot.entity.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, String> {
+}
\ No newline at end of file
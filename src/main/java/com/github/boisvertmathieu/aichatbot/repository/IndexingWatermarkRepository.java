@@ -0,0 +1,9 @@
+package com.github.boisvertmathieu.aichatbot.repository;
+
+import com.github.boisvertmathieu.aichatbot.entity.IndexingWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IndexingWatermarkRepository extends JpaRepository<IndexingWatermark, String> {
+}
\ No newline at end of file
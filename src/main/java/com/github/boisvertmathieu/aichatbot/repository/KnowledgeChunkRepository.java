@@ -0,0 +1,21 @@
+package com.github.boisvertmathieu.aichatbot.repository;
+
+import com.github.boisvertmathieu.aichatbot.entity.KnowledgeChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface KnowledgeChunkRepository extends JpaRepository<KnowledgeChunk, Long> {
+    
+    List<KnowledgeChunk> findByDocumentIdInOrderByDocumentIdAscChunkIndexAsc(Collection<String> documentIds);
+    
+    @Modifying
+    @Query("DELETE FROM KnowledgeChunk kc WHERE kc.documentId IN :documentIds")
+    int deleteByDocumentIds(@Param("documentIds") Collection<String> documentIds);
+}
\ No newline at end of file
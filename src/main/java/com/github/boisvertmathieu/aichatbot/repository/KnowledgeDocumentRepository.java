@@ -1,18 +1,36 @@
 package com.github.boisvertmathieu.aichatbot.repository;
 
 import com.github.boisvertmathieu.aichatbot.entity.KnowledgeDocument;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface KnowledgeDocumentRepository extends JpaRepository<KnowledgeDocument, Long> {
     
     Optional<KnowledgeDocument> findByDocumentId(String documentId);
     
+    @Query("SELECT kd.documentId FROM KnowledgeDocument kd WHERE kd.documentId IN :documentIds")
+    Set<String> findExistingDocumentIds(@Param("documentIds") Collection<String> documentIds);
+    
+    @Query("SELECT kd.id FROM KnowledgeDocument kd WHERE kd.documentId IN :documentIds ORDER BY kd.id")
+    List<Long> findIdsByDocumentIds(@Param("documentIds") Collection<String> documentIds);
+    
+    @Query("SELECT kd.documentId AS documentId, kd.minhashSignature AS minhashSignature FROM KnowledgeDocument kd " +
+           "WHERE kd.source = :source AND kd.minhashSignature IS NOT NULL")
+    List<DocumentSignature> findSignaturesBySource(@Param("source") String source);
+    
+    List<KnowledgeDocument> findBySourceAndMinhashSignatureIsNull(String source);
+    
     List<KnowledgeDocument> findByIndexedInSearchFalse();
     
     List<KnowledgeDocument> findByTagsContaining(String tag);
@@ -20,6 +38,26 @@ public interface KnowledgeDocumentRepository extends JpaRepository<KnowledgeDocu
     @Query("SELECT kd FROM KnowledgeDocument kd WHERE kd.embeddingHash IS NULL OR kd.indexedInSearch = false")
     List<KnowledgeDocument> findDocumentsNeedingIndexing();
     
+    @Query("SELECT kd.id FROM KnowledgeDocument kd WHERE kd.embeddingHash IS NULL OR kd.indexedInSearch = false ORDER BY kd.id")
+    List<Long> findIdsNeedingIndexing();
+    
+    Slice<KnowledgeDocument> findByUpdatedTimestampAfter(LocalDateTime since, Pageable pageable);
+    
+    @Query("SELECT kd.documentId FROM KnowledgeDocument kd")
+    Set<String> findAllDocumentIds();
+    
+    @Query("SELECT MIN(kd.id) FROM KnowledgeDocument kd")
+    Long findMinId();
+    
+    @Query("SELECT MAX(kd.id) FROM KnowledgeDocument kd")
+    Long findMaxId();
+    
     @Query("SELECT COUNT(kd) FROM KnowledgeDocument kd WHERE kd.indexedInSearch = true")
     Long countIndexedDocuments();
+    
+    interface DocumentSignature {
+        String getDocumentId();
+        
+        String getMinhashSignature();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.github.boisvertmathieu.aichatbot.repository;
+
+import com.github.boisvertmathieu.aichatbot.entity.StoredEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StoredEmbeddingRepository extends JpaRepository<StoredEmbedding, String> {
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.github.boisvertmathieu.aichatbot.repository;
+
+import com.github.boisvertmathieu.aichatbot.entity.TeamsOutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TeamsOutboxRepository extends JpaRepository<TeamsOutboxMessage, Long> {
+    
+    @Query("SELECT m FROM TeamsOutboxMessage m WHERE m.status = com.github.boisvertmathieu.aichatbot.entity.TeamsOutboxMessage.Status.PENDING AND m.nextAttemptAt <= :now ORDER BY m.id")
+    List<TeamsOutboxMessage> findDueMessages(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    @Query("SELECT COUNT(m) FROM TeamsOutboxMessage m WHERE m.status = com.github.boisvertmathieu.aichatbot.entity.TeamsOutboxMessage.Status.PENDING")
+    Long countPendingMessages();
+    
+    @Modifying
+    @Query("DELETE FROM TeamsOutboxMessage m WHERE m.status = com.github.boisvertmathieu.aichatbot.entity.TeamsOutboxMessage.Status.SENT AND m.sentTimestamp < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.github.boisvertmathieu.aichatbot.repository;
+
+import com.github.boisvertmathieu.aichatbot.entity.TokenLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TokenLedgerRepository extends JpaRepository<TokenLedgerEntry, String> {
+    
+    /**
+     * Incrément atomique côté base ; retourne 0 si la ligne n'existe pas encore
+     */
+    @Modifying
+    @Query("UPDATE TokenLedgerEntry e SET e.consumedTokens = e.consumedTokens + :tokens, " +
+           "e.updatedTimestamp = :now WHERE e.ledgerKey = :ledgerKey")
+    int addConsumption(@Param("ledgerKey") String ledgerKey, @Param("tokens") long tokens,
+                       @Param("now") LocalDateTime now);
+    
+    List<TokenLedgerEntry> findByUpdatedTimestampAfter(LocalDateTime since);
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Métriques du pipeline de chat : durée de chaque étape et de la requête complète (histogrammes,
+ * étiquetés par résultat), tokens consommés, nombre et scores des passages retrouvés.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatMetrics {
+    
+    public static final String STAGE_CACHE = "cache";
+    public static final String STAGE_RETRIEVAL = "retrieval";
+    public static final String STAGE_PROMPT = "prompt";
+    public static final String STAGE_LLM = "llm";
+    public static final String STAGE_PERSISTENCE = "persistence";
+    public static final String STAGE_TEAMS = "teams";
+    
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_CACHED = "cached";
+    public static final String OUTCOME_COALESCED = "coalesced";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_REJECTED = "rejected";
+    
+    private final MeterRegistry meterRegistry;
+    
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+    
+    /**
+     * Chronomètre une étape ; une exception est comptée avec le résultat "error" puis relancée
+     */
+    public <T> T timeStage(String stage, Supplier<T> action) {
+        Timer.Sample sample = start();
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = action.get();
+            outcome = OUTCOME_SUCCESS;
+            return result;
+        } catch (LlmBulkhead.BulkheadFullException e) {
+            outcome = OUTCOME_REJECTED;
+            throw e;
+        } finally {
+            stopStage(sample, stage, outcome);
+        }
+    }
+    
+    public void timeStage(String stage, Runnable action) {
+        timeStage(stage, () -> {
+            action.run();
+            return null;
+        });
+    }
+    
+    public void stopStage(Timer.Sample sample, String stage, String outcome) {
+        sample.stop(Timer.builder("chatbot.chat.stage")
+            .description("Durée de chaque étape du traitement d'une question")
+            .tag("stage", stage)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+    
+    /**
+     * Durée totale d'une question, par mode (sync ou stream) et résultat
+     */
+    public void stopRequest(Timer.Sample sample, String mode, String outcome) {
+        sample.stop(Timer.builder("chatbot.chat.requests")
+            .description("Durée totale du traitement d'une question")
+            .tag("mode", mode)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+    
+    public void recordTokens(Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null) {
+            tokenCounter("prompt").increment(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null) {
+            tokenCounter("completion").increment(usage.getCompletionTokens());
+        }
+    }
+    
+    /**
+     * Nombre de passages retrouvés et distribution de leurs scores, par source (vector, lexical, fused)
+     */
+    public void recordRetrieval(String source, List<Document> results) {
+        DistributionSummary.builder("chatbot.retrieval.hits")
+            .description("Nombre de passages retrouvés par recherche")
+            .tag("source", source)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(results.size());
+        
+        DistributionSummary scores = DistributionSummary.builder("chatbot.retrieval.score")
+            .description("Score des passages retrouvés")
+            .tag("source", source)
+            .publishPercentiles(0.5, 0.9, 0.99)
+            .register(meterRegistry);
+        
+        for (Document document : results) {
+            if (document.getScore() != null) {
+                scores.record(document.getScore());
+            }
+        }
+    }
+    
+    private Counter tokenCounter(String type) {
+        return Counter.builder("chatbot.llm.tokens")
+            .description("Tokens consommés par les appels à Azure OpenAI")
+            .tag("type", type)
+            .register(meterRegistry);
+    }
+}
\ No newline at end of file
@@ -5,24 +5,34 @@ import com.github.boisvertmathieu.aichatbot.dto.ChatResponse;
 import com.github.boisvertmathieu.aichatbot.dto.FeedbackRequest;
 import com.github.boisvertmathieu.aichatbot.entity.Conversation;
 import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
+import com.github.boisvertmathieu.aichatbot.service.ConversationMemoryService.ConversationMemory;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.azure.openai.AzureOpenAiChatModel;
-import org.springframework.ai.azure.openai.AzureOpenAiEmbeddingModel;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,60 +40,87 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatbotService {
     
-    private final AzureOpenAiChatModel chatModel;
-    private final AzureOpenAiEmbeddingModel embeddingModel;
-    private final VectorStore vectorStore;
+    private final ChatModel chatModel;
+    private final EmbeddingModel embeddingModel;
+    private final HybridRetriever hybridRetriever;
     private final ConversationRepository conversationRepository;
-    private final TeamsNotificationService teamsNotificationService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final ContextAssembler contextAssembler;
+    private final LlmBulkhead llmBulkhead;
+    private final ConversationMemoryService conversationMemoryService;
+    private final StatisticsService statisticsService;
+    private final ChatMetrics chatMetrics;
+    private final TokenAdmissionService tokenAdmissionService;
+    private final ConversationPersistenceService conversationPersistenceService;
     
-    @Value("${chatbot.rag.max-results:5}")
-    private int maxResults;
-    
-    @Value("${chatbot.rag.similarity-threshold:0.7}")
-    private double similarityThreshold;
+    private final SingleFlight<String, GeneratedAnswer> inFlightAnswers = new SingleFlight<>();
     
     @Value("${chatbot.system-message}")
     private String systemMessage;
     
-    @Transactional
+    @Value("${chatbot.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+    
+    @Value("${chatbot.coalescing.max-wait:PT30S}")
+    private Duration coalescingMaxWait;
+    
+    /**
+     * Pas de transaction englobante : la connexion n'est prise que pour la sauvegarde finale,
+     * et non pendant l'appel à Azure OpenAI
+     */
     public ChatResponse processQuestion(ChatRequest request) {
+        Timer.Sample requestSample = chatMetrics.start();
+        
         try {
             log.info("Traitement de la question pour conversationId: {}, userId: {}", 
                      request.getConversationId(), request.getUserId());
             
-            // 1. Recherche de documents pertinents avec RAG
-            List<Document> relevantDocuments = retrieveRelevantDocuments(request.getText());
-            
-            // 2. Construction du prompt avec contexte
-            String contextualPrompt = buildContextualPrompt(request.getText(), relevantDocuments);
+            // 1. Historique de la conversation, puis recherche d'une réponse équivalente dans le cache sémantique
+            ConversationMemory memory = conversationMemoryService.memoryOf(request.getConversationId());
+            float[] questionEmbedding = chatMetrics.timeStage(ChatMetrics.STAGE_CACHE, () -> embedForCache(request, memory));
+            Optional<SemanticAnswerCache.CachedAnswer> cachedAnswer = semanticAnswerCache.lookup(questionEmbedding);
             
-            // 3. Génération de la réponse avec Azure OpenAI
-            org.springframework.ai.chat.model.ChatResponse aiResponse = generateResponse(contextualPrompt);
-            String responseText = aiResponse.getResult().getOutput().getText();
+            String responseText;
+            List<String> documentIds;
+            Integer tokensUsed;
+            String outcome;
             
-            // 4. Extraction des métadonnées
-            List<String> documentIds = relevantDocuments.stream()
-                .map(doc -> doc.getMetadata().get("id").toString())
-                .collect(Collectors.toList());
-            
-            Integer tokensUsed = extractTokenUsage(aiResponse);
+            if (cachedAnswer.isPresent()) {
+                responseText = cachedAnswer.get().response();
+                documentIds = cachedAnswer.get().documentIds();
+                tokensUsed = 0;
+                outcome = ChatMetrics.OUTCOME_CACHED;
+            } else {
+                // 2 à 4. Une seule recherche et un seul appel LLM pour les questions identiques en cours de traitement
+                SingleFlight.Result<GeneratedAnswer> generated = generateOnce(request, memory, questionEmbedding);
+                responseText = generated.value().response();
+                documentIds = generated.value().documentIds();
+                // Les tokens ne sont comptés que pour la requête qui a réellement appelé Azure OpenAI
+                tokensUsed = generated.shared() ? 0 : generated.value().tokensUsed();
+                outcome = generated.shared() ? ChatMetrics.OUTCOME_COALESCED : ChatMetrics.OUTCOME_SUCCESS;
+            }
             
-            // 5. Sauvegarde de la conversation
-            Conversation conversation = saveConversation(request, responseText, documentIds, tokensUsed);
+            // 5. Sauvegarde du tour et notification Teams via l'outbox, dans une transaction courte
+            recordExchange(request, memory, responseText, documentIds, tokensUsed);
             
-            // 6. Notification Teams (canal de test par défaut)
-            teamsNotificationService.sendResponse(request.getConversationId(), responseText);
+            chatMetrics.stopRequest(requestSample, "sync", outcome);
             
             return ChatResponse.builder()
                 .conversationId(request.getConversationId())
                 .response(responseText)
                 .retrievedDocumentIds(documentIds)
                 .tokensUsed(tokensUsed)
+                .cached(cachedAnswer.isPresent())
                 .timestamp(LocalDateTime.now())
                 .success(true)
                 .build();
                 
+        } catch (LlmBulkhead.BulkheadFullException e) {
+            chatMetrics.stopRequest(requestSample, "sync", ChatMetrics.OUTCOME_REJECTED);
+            throw e;
+            
         } catch (Exception e) {
+            chatMetrics.stopRequest(requestSample, "sync", ChatMetrics.OUTCOME_ERROR);
             log.error("Erreur lors du traitement de la question: {}", e.getMessage(), e);
             return ChatResponse.builder()
                 .conversationId(request.getConversationId())
@@ -94,60 +131,224 @@ public class ChatbotService {
         }
     }
     
-    private List<Document> retrieveRelevantDocuments(String question) {
-        log.debug("Recherche de documents pertinents pour la question: {}", question);
+    /**
+     * Variante en flux de {@link #processQuestion(ChatRequest)} : les tokens sont émis dès leur réception
+     * et la conversation est sauvegardée (puis notifiée sur Teams) une fois le flux terminé
+     */
+    public Flux<String> streamQuestion(ChatRequest request) {
+        Timer.Sample requestSample = chatMetrics.start();
+        AtomicReference<String> outcome = new AtomicReference<>(ChatMetrics.OUTCOME_SUCCESS);
         
-        SearchRequest searchRequest = SearchRequest.builder()
-                .query(question)
-                .similarityThreshold(similarityThreshold)
-                .topK(maxResults)
-                .build();
-
-        return vectorStore.similaritySearch(searchRequest);
+        return Flux.defer(() -> {
+            log.info("Traitement en flux de la question pour conversationId: {}, userId: {}", 
+                     request.getConversationId(), request.getUserId());
+            
+            ConversationMemory memory = conversationMemoryService.memoryOf(request.getConversationId());
+            float[] questionEmbedding = chatMetrics.timeStage(ChatMetrics.STAGE_CACHE, () -> embedForCache(request, memory));
+            Optional<SemanticAnswerCache.CachedAnswer> cachedAnswer = semanticAnswerCache.lookup(questionEmbedding);
+            
+            if (cachedAnswer.isPresent()) {
+                outcome.set(ChatMetrics.OUTCOME_CACHED);
+                String responseText = cachedAnswer.get().response();
+                return Flux.just(responseText)
+                    .concatWith(completeExchange(request, memory, responseText, cachedAnswer.get().documentIds(), 0));
+            }
+            
+            long cacheGeneration = semanticAnswerCache.currentGeneration();
+            
+            List<Document> relevantDocuments = chatMetrics.timeStage(ChatMetrics.STAGE_RETRIEVAL, 
+                                                                     () -> retrieveRelevantDocuments(request.getText()));
+            List<Message> promptPrefix = promptPrefix(memory);
+            ContextAssembler.AssembledContext context = chatMetrics.timeStage(ChatMetrics.STAGE_PROMPT, 
+                () -> contextAssembler.assemble(request.getText(), relevantDocuments,
+                                                contextAssembler.estimateTokens(promptPrefix)));
+            List<String> documentIds = parentDocumentIds(context.documents());
+            
+            StringBuilder responseText = new StringBuilder();
+            AtomicReference<Usage> usage = new AtomicReference<>();
+            Prompt prompt = buildPrompt(promptPrefix, context.prompt());
+            Timer.Sample llmSample = chatMetrics.start();
+            
+            return llmBulkhead.stream(() -> chatModel.stream(prompt))
+                .doOnNext(chunk -> {
+                    // L'usage n'est renseigné que sur le dernier fragment, et seulement avec stream-usage
+                    Usage chunkUsage = usageOf(chunk);
+                    if (chunkUsage != null) {
+                        usage.set(chunkUsage);
+                    }
+                })
+                .doFinally(signal -> chatMetrics.stopStage(llmSample, ChatMetrics.STAGE_LLM, 
+                    signal == SignalType.ON_COMPLETE ? ChatMetrics.OUTCOME_SUCCESS : ChatMetrics.OUTCOME_ERROR))
+                .filter(chunk -> chunk.getResult() != null && chunk.getResult().getOutput() != null
+                                 && chunk.getResult().getOutput().getText() != null)
+                .map(chunk -> chunk.getResult().getOutput().getText())
+                .doOnNext(responseText::append)
+                .concatWith(Mono.defer(() -> {
+                    chatMetrics.recordTokens(usage.get());
+                    semanticAnswerCache.put(request.getText(), questionEmbedding, responseText.toString(),
+                                            documentIds, cacheGeneration);
+                    Integer tokensUsed = usage.get() != null && usage.get().getTotalTokens() != null
+                        ? usage.get().getTotalTokens()
+                        : estimateTokensUsed(prompt, responseText.toString());
+                    tokenAdmissionService.debit(request.getUserId(), tokensUsed);
+                    return completeExchange(request, memory, responseText.toString(), documentIds, tokensUsed);
+                }));
+        })
+        .subscribeOn(Schedulers.boundedElastic())
+        .doOnError(e -> {
+            outcome.set(e instanceof LlmBulkhead.BulkheadFullException 
+                ? ChatMetrics.OUTCOME_REJECTED : ChatMetrics.OUTCOME_ERROR);
+            log.error("Erreur lors du traitement en flux de la question: {}", e.getMessage(), e);
+        })
+        .doFinally(signal -> chatMetrics.stopRequest(requestSample, "stream", 
+            signal == SignalType.CANCEL ? "cancelled" : outcome.get()));
     }
     
-    private String buildContextualPrompt(String question, List<Document> documents) {
-        StringBuilder context = new StringBuilder();
+    /**
+     * Regroupe les requêtes concurrentes de même question normalisée et de même historique : rien n'est
+     * conservé une fois la réponse produite, chaque requête garde son propre tour de conversation
+     */
+    private SingleFlight.Result<GeneratedAnswer> generateOnce(ChatRequest request, ConversationMemory memory,
+                                                              float[] questionEmbedding) {
+        if (!coalescingEnabled) {
+            return new SingleFlight.Result<>(generateAnswer(request, memory, questionEmbedding), false);
+        }
         
-        if (!documents.isEmpty()) {
-            context.append("Contexte pertinent:\n");
-            for (int i = 0; i < documents.size(); i++) {
-                context.append(String.format("[Doc %d] %s\n", i + 1, documents.get(i).getText()));
-            }
-            context.append("\n");
+        String key = SemanticAnswerCache.normalizeQuestion(request.getText()) + "\u0000" + memory.historyKey();
+        return inFlightAnswers.execute(key, coalescingMaxWait, () -> generateAnswer(request, memory, questionEmbedding));
+    }
+    
+    private GeneratedAnswer generateAnswer(ChatRequest request, ConversationMemory memory, float[] questionEmbedding) {
+        long cacheGeneration = semanticAnswerCache.currentGeneration();
+        
+        // 2. Recherche de documents pertinents avec RAG
+        List<Document> relevantDocuments = chatMetrics.timeStage(ChatMetrics.STAGE_RETRIEVAL, 
+                                                                 () -> retrieveRelevantDocuments(request.getText()));
+        
+        // 3. Construction du prompt avec contexte, dans le budget de tokens restant après l'historique
+        List<Message> promptPrefix = promptPrefix(memory);
+        ContextAssembler.AssembledContext context = chatMetrics.timeStage(ChatMetrics.STAGE_PROMPT, 
+            () -> contextAssembler.assemble(request.getText(), relevantDocuments,
+                                            contextAssembler.estimateTokens(promptPrefix)));
+        
+        // 4. Génération de la réponse avec Azure OpenAI
+        org.springframework.ai.chat.model.ChatResponse aiResponse = chatMetrics.timeStage(ChatMetrics.STAGE_LLM, 
+            () -> generateResponse(promptPrefix, context.prompt()));
+        String responseText = aiResponse.getResult().getOutput().getText();
+        
+        List<String> documentIds = parentDocumentIds(context.documents());
+        
+        chatMetrics.recordTokens(usageOf(aiResponse));
+        Integer tokensUsed = extractTokenUsage(aiResponse);
+        tokenAdmissionService.debit(request.getUserId(), tokensUsed);
+        
+        semanticAnswerCache.put(request.getText(), questionEmbedding, responseText, documentIds, cacheGeneration);
+        
+        return new GeneratedAnswer(responseText, documentIds, tokensUsed);
+    }
+    
+    private Mono<String> completeExchange(ChatRequest request, ConversationMemory memory, String responseText,
+                                          List<String> documentIds, Integer tokensUsed) {
+        return Mono.<String>fromRunnable(() -> recordExchange(request, memory, responseText, documentIds, tokensUsed))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    /**
+     * La réponse dépend de l'historique dès le deuxième tour : le cache sémantique n'est alors pas utilisé
+     */
+    private float[] embedForCache(ChatRequest request, ConversationMemory memory) {
+        if (!semanticAnswerCache.isEnabled() || memory.hasHistory()) {
+            return null;
         }
+        return embeddingModel.embed(request.getText());
+    }
+    
+    private void recordExchange(ChatRequest request, ConversationMemory memory, String responseText,
+                                List<String> documentIds, Integer tokensUsed) {
+        Conversation conversation = newConversation(request, memory.nextTurnIndex(), responseText, documentIds, tokensUsed);
+        
+        // Transaction courte avec la notification Teams (outbox), ou simple mise en file en write-behind.
+        // L'index de tour est réattribué s'il a été pris entre-temps par un autre nœud.
+        chatMetrics.timeStage(ChatMetrics.STAGE_PERSISTENCE, () -> conversationPersistenceService.save(conversation));
         
-        context.append("Question: ").append(question);
+        conversationMemoryService.recordTurn(memory, conversation.getTurnIndex(), request.getText(), responseText);
+    }
+    
+    private List<Document> retrieveRelevantDocuments(String question) {
+        return hybridRetriever.retrieve(question);
+    }
+    
+    /**
+     * Identifiants des documents parents des passages retrouvés, sans doublon et dans l'ordre de pertinence
+     */
+    private List<String> parentDocumentIds(List<Document> passages) {
+        return passages.stream()
+            .map(doc -> doc.getMetadata().get("id").toString())
+            .distinct()
+            .collect(Collectors.toList());
+    }
+    
+    private org.springframework.ai.chat.model.ChatResponse generateResponse(List<Message> promptPrefix,
+                                                                           String contextualPrompt) {
+        return llmBulkhead.call(() -> chatModel.call(buildPrompt(promptPrefix, contextualPrompt)));
+    }
+    
+    /**
+     * Messages précédant la question : lus une seule fois, pour que le budget du contexte soit calculé
+     * sur l'historique réellement envoyé
+     */
+    private List<Message> promptPrefix(ConversationMemory memory) {
+        List<Message> messages = new ArrayList<>();
+        messages.add(new SystemMessage(systemMessage));
+        // Résumé des anciens tours puis derniers tours : taille bornée quelle que soit la longueur de la conversation
+        messages.addAll(memory.historyMessages());
+        return messages;
+    }
+    
+    private Prompt buildPrompt(List<Message> promptPrefix, String contextualPrompt) {
+        List<Message> messages = new ArrayList<>(promptPrefix);
+        messages.add(new UserMessage(contextualPrompt));
         
-        return context.toString();
+        return new Prompt(messages);
     }
     
-    private org.springframework.ai.chat.model.ChatResponse generateResponse(String contextualPrompt) {
-        List<Message> messages = List.of(
-            new SystemMessage(systemMessage),
-            new UserMessage(contextualPrompt)
-        );
+    /**
+     * Estimation locale quand Azure OpenAI n'a pas rapporté l'usage d'une réponse en flux : sans elle,
+     * le flux échapperait aux budgets de tokens
+     */
+    private int estimateTokensUsed(Prompt prompt, String responseText) {
+        List<Message> messages = new ArrayList<>(prompt.getInstructions());
+        messages.add(new AssistantMessage(responseText));
         
-        Prompt prompt = new Prompt(messages);
-        return chatModel.call(prompt);
+        log.debug("Usage absent de la réponse en flux, tokens estimés localement");
+        return contextAssembler.estimateTokens(messages);
     }
     
     private Integer extractTokenUsage(org.springframework.ai.chat.model.ChatResponse response) {
-        try {
-            // Tentative d'extraction des tokens utilisés depuis les métadonnées
-            if (response.getMetadata() != null && response.getMetadata().get("usage") != null) {
-                return (Integer) response.getMetadata().get("usage");
-            }
-        } catch (Exception e) {
-            log.warn("Impossible d'extraire l'usage des tokens: {}", e.getMessage());
+        Usage usage = usageOf(response);
+        return usage != null ? usage.getTotalTokens() : null;
+    }
+    
+    /**
+     * Usage des tokens rapporté par Azure OpenAI, ou null s'il est absent (usage vide des fragments intermédiaires)
+     */
+    private Usage usageOf(org.springframework.ai.chat.model.ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return null;
+        }
+        
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null || usage.getTotalTokens() == null || usage.getTotalTokens() == 0) {
+            return null;
         }
-        return null;
+        return usage;
     }
     
-    private Conversation saveConversation(ChatRequest request, String response, 
-                                          List<String> documentIds, Integer tokensUsed) {
-        Conversation conversation = Conversation.builder()
+    private Conversation newConversation(ChatRequest request, int turnIndex, String response, 
+                                         List<String> documentIds, Integer tokensUsed) {
+        return Conversation.builder()
             .conversationId(request.getConversationId())
+            .turnIndex(turnIndex)
             .userId(request.getUserId())
             .question(request.getText())
             .response(response)
@@ -155,17 +356,18 @@ public class ChatbotService {
             .tokensUsed(tokensUsed)
             .timestamp(LocalDateTime.now())
             .build();
-            
-        return conversationRepository.save(conversation);
     }
     
     @Transactional
     public void processFeedback(FeedbackRequest feedbackRequest) {
         log.info("Traitement du feedback pour conversationId: {}", feedbackRequest.getConversationId());
         
-        conversationRepository.findByConversationId(feedbackRequest.getConversationId())
+        // Le feedback porte sur le dernier tour de la conversation, qui peut encore attendre en write-behind
+        conversationPersistenceService.flushPending(feedbackRequest.getConversationId());
+        conversationRepository.findFirstByConversationIdOrderByTurnIndexDesc(feedbackRequest.getConversationId())
             .ifPresentOrElse(
                 conversation -> {
+                    statisticsService.onFeedbackChanged(conversation.getFeedbackUseful(), feedbackRequest.getUseful());
                     conversation.setFeedbackUseful(feedbackRequest.getUseful());
                     conversation.setCorrectedResponse(feedbackRequest.getCorrectedResponse());
                     conversation.setFeedbackTimestamp(LocalDateTime.now());
@@ -181,4 +383,7 @@ public class ChatbotService {
                 }
             );
     }
-} 
\ No newline at end of file
+    
+    private record GeneratedAnswer(String response, List<String> documentIds, Integer tokensUsed) {
+    }
+}
\ No newline at end of file
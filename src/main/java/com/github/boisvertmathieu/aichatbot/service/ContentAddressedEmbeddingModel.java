@@ -0,0 +1,191 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.repository.StoredEmbeddingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Modèle d'embedding adressé par contenu : les embeddings de documents sont persistés par hash SHA-256
+ * du texte, et seul le contenu jamais vu (ou embarqué avec un autre modèle) est envoyé au modèle délégué.
+ * Les requêtes de recherche ne sont pas persistées : leur embedding est seulement conservé quelques
+ * secondes en mémoire, pour que la recherche vectorielle réutilise celui calculé pour le cache sémantique.
+ */
+@Slf4j
+public class ContentAddressedEmbeddingModel implements EmbeddingModel {
+    
+    private static final int MAX_RECENT_QUERIES = 1024;
+    
+    // Insertion si absent : deux passages parallèles au même contenu ne se disputent pas la clé primaire.
+    // Une ligne calculée avec un autre modèle est remplacée.
+    private static final String UPSERT_EMBEDDING =
+        "MERGE document_embeddings WITH (HOLDLOCK) AS target " +
+        "USING (SELECT :contentHash AS content_hash) AS source ON target.content_hash = source.content_hash " +
+        "WHEN MATCHED AND target.model <> :model THEN " +
+        "UPDATE SET model = :model, dimensions = :dimensions, vector = :vector, created_timestamp = :now " +
+        "WHEN NOT MATCHED THEN " +
+        "INSERT (content_hash, model, dimensions, vector, created_timestamp) " +
+        "VALUES (:contentHash, :model, :dimensions, :vector, :now);";
+    
+    private final EmbeddingModel delegate;
+    private final StoredEmbeddingRepository storedEmbeddingRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String modelName;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter queryReuseCounter;
+    private final long recentQueryTtlNanos;
+    
+    // Embeddings des dernières requêtes, par texte exact
+    private final Map<String, RecentQuery> recentQueries = new ConcurrentHashMap<>();
+    
+    public ContentAddressedEmbeddingModel(EmbeddingModel delegate,
+                                          StoredEmbeddingRepository storedEmbeddingRepository,
+                                          NamedParameterJdbcTemplate jdbcTemplate,
+                                          String modelName,
+                                          Duration recentQueryTtl,
+                                          MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.storedEmbeddingRepository = storedEmbeddingRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.modelName = modelName;
+        this.recentQueryTtlNanos = recentQueryTtl.toNanos();
+        this.hitCounter = meterRegistry.counter("chatbot.embedding.store.lookups", "result", "hit");
+        this.missCounter = meterRegistry.counter("chatbot.embedding.store.lookups", "result", "miss");
+        this.queryReuseCounter = meterRegistry.counter("chatbot.embedding.query.reused");
+    }
+    
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+    
+    /**
+     * Embedding d'une requête : la question embarquée pour le cache sémantique est réutilisée telle quelle
+     * par la recherche vectorielle qui suit, au lieu d'un second appel à Azure OpenAI
+     */
+    @Override
+    public float[] embed(String text) {
+        if (recentQueryTtlNanos <= 0) {
+            return delegate.embed(text);
+        }
+        
+        long now = System.nanoTime();
+        RecentQuery recent = recentQueries.get(text);
+        if (recent != null && now - recent.embeddedAt() < recentQueryTtlNanos) {
+            queryReuseCounter.increment();
+            return recent.vector();
+        }
+        
+        float[] vector = delegate.embed(text);
+        if (recentQueries.size() >= MAX_RECENT_QUERIES) {
+            recentQueries.values().removeIf(query -> now - query.embeddedAt() >= recentQueryTtlNanos);
+            if (recentQueries.size() >= MAX_RECENT_QUERIES) {
+                recentQueries.clear();
+            }
+        }
+        recentQueries.put(text, new RecentQuery(vector, now));
+        return vector;
+    }
+    
+    @Override
+    public float[] embed(Document document) {
+        return embed(List.of(document), null, null).get(0);
+    }
+    
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        // Hash de chaque document, dans l'ordre d'entrée
+        List<String> hashes = documents.stream()
+            .map(document -> ContentHash.sha256(document.getText()))
+            .toList();
+        
+        Map<String, float[]> vectors = new HashMap<>();
+        storedEmbeddingRepository.findAllById(new HashSet<>(hashes)).stream()
+            .filter(stored -> modelName.equals(stored.getModel()))
+            .forEach(stored -> vectors.put(stored.getContentHash(), decode(stored.getVector())));
+        
+        // Contenu à embarquer, dédupliqué par hash
+        Map<String, Document> missing = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            if (!vectors.containsKey(hashes.get(i))) {
+                missing.putIfAbsent(hashes.get(i), documents.get(i));
+            }
+        }
+        
+        hitCounter.increment(documents.size() - missing.size());
+        missCounter.increment(missing.size());
+        
+        if (!missing.isEmpty()) {
+            List<Document> toEmbed = new ArrayList<>(missing.values());
+            // Sans options ni stratégie de découpage, un seul appel groupé plutôt qu'un appel par texte
+            List<float[]> computed = options == null || batchingStrategy == null
+                ? delegate.embed(toEmbed.stream().map(Document::getText).toList())
+                : delegate.embed(toEmbed, options, batchingStrategy);
+            
+            LocalDateTime now = LocalDateTime.now();
+            List<SqlParameterSource> toStore = new ArrayList<>(computed.size());
+            int index = 0;
+            for (String hash : missing.keySet()) {
+                float[] vector = computed.get(index++);
+                vectors.put(hash, vector);
+                toStore.add(new MapSqlParameterSource()
+                    .addValue("contentHash", hash)
+                    .addValue("model", modelName)
+                    .addValue("dimensions", vector.length)
+                    .addValue("vector", encode(vector), Types.VARBINARY)
+                    .addValue("now", now));
+            }
+            
+            jdbcTemplate.batchUpdate(UPSERT_EMBEDDING, toStore.toArray(SqlParameterSource[]::new));
+            
+            log.debug("{} embeddings calculés, {} réutilisés depuis le stockage",
+                     missing.size(), documents.size() - missing.size());
+        }
+        
+        return hashes.stream().map(vectors::get).collect(Collectors.toList());
+    }
+    
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+    
+    static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+    
+    static float[] decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+    
+    private record RecentQuery(float[] vector, long embeddedAt) {
+    }
+}
\ No newline at end of file
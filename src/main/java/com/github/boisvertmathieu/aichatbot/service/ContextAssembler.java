@@ -0,0 +1,187 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.knuddels.jtokkit.api.EncodingType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Construit le prompt contextuel dans un budget de tokens fixe, qui couvre aussi les messages envoyés
+ * avant lui (message système, résumé et derniers tours de la conversation).
+ * Les passages sont retenus par score décroissant, les doublons écartés, et le dernier passage
+ * qui dépasse le budget est tronqué à une fin de phrase.
+ */
+@Component
+@Slf4j
+public class ContextAssembler {
+    
+    static final String CONTEXT_HEADER = "Contexte pertinent:\n";
+    
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    // Rôle et délimiteurs ajoutés par message dans le format de chat d'Azure OpenAI
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    
+    // Encodage des modèles GPT-4o et text-embedding-3
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator(EncodingType.O200K_BASE);
+    
+    private final int maxTokens;
+    private final int minPassageTokens;
+    
+    public ContextAssembler(@Value("${chatbot.context.max-tokens:3000}") int maxTokens,
+                            @Value("${chatbot.context.min-passage-tokens:50}") int minPassageTokens) {
+        this.maxTokens = maxTokens;
+        this.minPassageTokens = minPassageTokens;
+    }
+    
+    /**
+     * Tokens des messages envoyés avant le prompt contextuel, à déduire du budget. Sert aussi à estimer
+     * la consommation d'une réponse en flux dont Azure OpenAI n'a pas rapporté l'usage.
+     */
+    public int estimateTokens(List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += MESSAGE_OVERHEAD_TOKENS;
+            if (message.getText() != null) {
+                tokens += tokenCountEstimator.estimate(message.getText());
+            }
+        }
+        return tokens;
+    }
+    
+    public AssembledContext assemble(String question, List<Document> documents) {
+        return assemble(question, documents, 0);
+    }
+    
+    /**
+     * Assemble le prompt contextuel dans ce qui reste du budget une fois {@code historyTokens} déduits
+     */
+    public AssembledContext assemble(String question, List<Document> documents, int historyTokens) {
+        String questionSection = "Question: " + question;
+        int questionTokens = tokenCountEstimator.estimate(questionSection);
+        int headerTokens = tokenCountEstimator.estimate(CONTEXT_HEADER + "\n");
+        
+        int remaining = maxTokens - historyTokens - questionTokens - headerTokens;
+        
+        List<Document> included = new ArrayList<>();
+        List<SectionUsage> sections = new ArrayList<>();
+        StringBuilder context = new StringBuilder();
+        Set<String> seenPassages = new HashSet<>();
+        int droppedCount = 0;
+        
+        List<Document> byScore = documents.stream()
+            .sorted(Comparator.comparingDouble(ContextAssembler::score).reversed())
+            .toList();
+        
+        for (Document document : byScore) {
+            String text = document.getText();
+            if (text == null || text.isBlank() || !seenPassages.add(normalize(text))) {
+                droppedCount++;
+                continue;
+            }
+            
+            String section = formatSection(included.size() + 1, text);
+            int sectionTokens = tokenCountEstimator.estimate(section);
+            boolean truncated = false;
+            
+            if (sectionTokens > remaining) {
+                if (remaining < minPassageTokens) {
+                    droppedCount++;
+                    continue;
+                }
+                
+                section = truncateToSentences(included.size() + 1, text, remaining);
+                if (section == null) {
+                    droppedCount++;
+                    continue;
+                }
+                sectionTokens = tokenCountEstimator.estimate(section);
+                truncated = true;
+            }
+            
+            context.append(section);
+            included.add(document);
+            sections.add(new SectionUsage("Doc " + included.size(), sectionTokens, truncated));
+            remaining -= sectionTokens;
+        }
+        
+        StringBuilder prompt = new StringBuilder();
+        int contextTokens = 0;
+        if (!included.isEmpty()) {
+            prompt.append(CONTEXT_HEADER).append(context).append("\n");
+            contextTokens = headerTokens + sections.stream().mapToInt(SectionUsage::tokens).sum();
+        }
+        prompt.append(questionSection);
+        sections.add(new SectionUsage("Question", questionTokens, false));
+        if (historyTokens > 0) {
+            sections.add(new SectionUsage("Historique", historyTokens, false));
+        }
+        
+        AssembledContext assembled = new AssembledContext(prompt.toString(), List.copyOf(included),
+                                                          List.copyOf(sections),
+                                                          historyTokens + contextTokens + questionTokens,
+                                                          droppedCount);
+        
+        log.debug("Contexte assemblé: {} tokens sur {} ({} passages retenus, {} écartés), détail: {}",
+                 assembled.totalTokens(), maxTokens, included.size(), droppedCount, sections);
+        
+        return assembled;
+    }
+    
+    /**
+     * Plus longue suite de phrases du passage qui tient dans le budget, ou null si aucune phrase n'y tient
+     */
+    private String truncateToSentences(int index, String text, int budget) {
+        String[] sentences = SENTENCE_END.split(text.strip());
+        
+        // Le nombre de tokens croît avec le nombre de phrases : recherche dichotomique
+        int low = 0;
+        int high = sentences.length;
+        while (low < high) {
+            int middle = (low + high + 1) / 2;
+            if (tokenCountEstimator.estimate(formatSection(index, joinSentences(sentences, middle))) <= budget) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        
+        return low == 0 ? null : formatSection(index, joinSentences(sentences, low));
+    }
+    
+    private static String joinSentences(String[] sentences, int count) {
+        return String.join(" ", List.of(sentences).subList(0, count));
+    }
+    
+    private static String formatSection(int index, String text) {
+        return "[Doc " + index + "] " + text + "\n";
+    }
+    
+    private static String normalize(String text) {
+        return WHITESPACE.matcher(text.strip().toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+    
+    private static double score(Document document) {
+        return document.getScore() != null ? document.getScore() : 0.0;
+    }
+    
+    public record AssembledContext(String prompt, List<Document> documents, List<SectionUsage> sections,
+                                   int totalTokens, int droppedCount) {
+    }
+    
+    public record SectionUsage(String section, int tokens, boolean truncated) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,440 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.boisvertmathieu.aichatbot.entity.Conversation;
+import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.DefaultLockingTaskExecutor;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.LockingTaskExecutor;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archivage froid des conversations : les tours plus anciens que {@code chatbot.archive.max-age} quittent
+ * la table {@code conversations} pour des segments NDJSON compressés (gzip), rangés par mois, sur disque.
+ * Un index ({@code index.ndjson}) décrit chaque segment (période, identifiants, compteurs de feedback) et
+ * permet de relire un intervalle sans ouvrir tous les fichiers.
+ * <p>
+ * Un segment est écrit avant la suppression des lignes, et n'est indexé qu'une fois celle-ci validée : un tour
+ * n'est donc compté qu'une fois dans l'index. Après une interruption, les segments non indexés sont repris au
+ * démarrage et au début de chaque archivage : indexés si leurs lignes ont quitté la table, supprimés sinon.
+ * La lecture élimine malgré tout les doublons éventuels.
+ */
+@Service
+@Slf4j
+public class ConversationArchiveService {
+    
+    private static final String INDEX_FILE = "index.ndjson";
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    // Même verrou que l'archivage planifié : la reprise ne doit pas voir le segment en cours d'un autre nœud
+    private static final String LOCK_NAME = "archiveConversations";
+    private static final DateTimeFormatter SEGMENT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    
+    private final ConversationRepository conversationRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final LockingTaskExecutor lockingTaskExecutor;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final Path directory;
+    private final int batchSize;
+    
+    private List<ArchiveSegment> segments = List.of();
+    private FileTime indexModifiedAt;
+    
+    public ConversationArchiveService(ConversationRepository conversationRepository,
+                                      ObjectMapper objectMapper,
+                                      TransactionTemplate transactionTemplate,
+                                      LockProvider lockProvider,
+                                      @Value("${chatbot.archive.enabled:true}") boolean enabled,
+                                      @Value("${chatbot.archive.max-age:P90D}") Duration maxAge,
+                                      @Value("${chatbot.archive.directory:./data/archive/conversations}") String directory,
+                                      @Value("${chatbot.archive.batch-size:1000}") int batchSize) {
+        this.conversationRepository = conversationRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.lockingTaskExecutor = new DefaultLockingTaskExecutor(lockProvider);
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.directory = Path.of(directory);
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Déplace vers l'archive, lot par lot, les tours antérieurs à la limite de rétention
+     *
+     * @return le nombre de tours archivés
+     */
+    @Scheduled(cron = "${chatbot.archive.cron:0 0 4 * * *}")
+    @SchedulerLock(name = LOCK_NAME,
+                   lockAtMostFor = "PT2H",
+                   lockAtLeastFor = "PT1M")
+    public synchronized int archiveOldConversations() {
+        if (!enabled) {
+            return 0;
+        }
+        
+        try {
+            recoverOrphanedSegments();
+        } catch (Exception e) {
+            log.error("Erreur lors de la reprise des segments d'archive non indexés: {}", e.getMessage(), e);
+            return 0;
+        }
+        
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        String runId = LocalDateTime.now().format(SEGMENT_TIMESTAMP);
+        int archived = 0;
+        int segmentNumber = 0;
+        
+        try {
+            List<Conversation> batch;
+            while (!(batch = conversationRepository.findOlderThan(cutoff, PageRequest.of(0, batchSize))).isEmpty()) {
+                // Un segment par mois : un intervalle de dates n'ouvre que les mois concernés
+                Map<YearMonth, List<Conversation>> byMonth = new TreeMap<>();
+                for (Conversation conversation : batch) {
+                    byMonth.computeIfAbsent(YearMonth.from(conversation.getTimestamp()), m -> new ArrayList<>())
+                        .add(conversation);
+                }
+                
+                List<ArchiveSegment> written = new ArrayList<>();
+                for (Map.Entry<YearMonth, List<Conversation>> month : byMonth.entrySet()) {
+                    String name = month.getKey() + "/conversations-" + runId + "-" + (++segmentNumber) + SEGMENT_SUFFIX;
+                    written.add(writeSegment(name, month.getValue()));
+                }
+                
+                List<Long> ids = batch.stream().map(Conversation::getId).toList();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> conversationRepository.deleteByIds(ids));
+                } catch (RuntimeException e) {
+                    // Les lignes sont toujours en table : elles seront archivées de nouveau
+                    for (ArchiveSegment segment : written) {
+                        Files.deleteIfExists(directory.resolve(segment.segment()));
+                    }
+                    throw e;
+                }
+                
+                // Indexé seulement une fois la suppression validée, pour ne jamais compter un tour deux fois
+                for (ArchiveSegment segment : written) {
+                    appendToIndex(segment);
+                }
+                archived += batch.size();
+            }
+            
+            if (archived > 0) {
+                log.info("{} tours de conversation antérieurs au {} archivés dans {}", archived, cutoff, directory);
+            }
+        
+        } catch (Exception e) {
+            log.error("Erreur lors de l'archivage des conversations ({} tours archivés): {}",
+                      archived, e.getMessage(), e);
+        }
+        
+        return archived;
+    }
+    
+    /**
+     * Reprise au démarrage des segments laissés par un archivage interrompu, si aucun archivage n'est en cours
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            lockingTaskExecutor.executeWithLock((Runnable) () -> {
+                synchronized (this) {
+                    try {
+                        recoverOrphanedSegments();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }, new LockConfiguration(Instant.now(), LOCK_NAME, Duration.ofMinutes(30), Duration.ZERO));
+        
+        } catch (Exception e) {
+            log.error("Erreur lors de la reprise des segments d'archive non indexés: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Segments écrits mais absents de l'index : archivage interrompu entre l'écriture et l'indexation.
+     * La suppression des lignes d'un lot étant atomique, un segment est indexé si aucune de ses lignes n'est
+     * plus en table, et supprimé si elles y sont toutes. À appeler sous le verrou de l'archivage.
+     */
+    private void recoverOrphanedSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        
+        Set<String> indexed = segments().stream().map(ArchiveSegment::segment).collect(Collectors.toSet());
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        
+        for (Path file : files) {
+            String name = directory.relativize(file).toString().replace(File.separatorChar, '/');
+            if (name.endsWith(SEGMENT_SUFFIX + ".tmp")) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            if (!name.endsWith(SEGMENT_SUFFIX) || indexed.contains(name)) {
+                continue;
+            }
+            
+            List<Conversation> conversations = readSegment(file);
+            if (conversations.isEmpty()) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            
+            List<Long> ids = conversations.stream().map(Conversation::getId).toList();
+            long stillStored = conversationRepository.countByIds(ids);
+            if (stillStored == 0) {
+                appendToIndex(describe(name, conversations, Files.getLastModifiedTime(file).toInstant()));
+                log.info("Segment d'archive {} repris dans l'index ({} tours)", name, conversations.size());
+            } else if (stillStored == ids.size()) {
+                Files.delete(file);
+                log.info("Segment d'archive {} abandonné, ses {} tours sont toujours en table", name, ids.size());
+            } else {
+                log.warn("Segment d'archive {} ignoré: {} de ses {} tours sont encore en table",
+                         name, stillStored, ids.size());
+            }
+        }
+    }
+    
+    /**
+     * Tours archivés dont l'horodatage est compris dans l'intervalle, dans l'ordre chronologique
+     */
+    public List<Conversation> readArchived(LocalDateTime from, LocalDateTime to, int limit) throws IOException {
+        Map<Long, Conversation> conversations = new LinkedHashMap<>();
+        for (ArchiveSegment segment : overlapping(from, to)) {
+            for (Conversation conversation : readSegment(segment)) {
+                if (!conversation.getTimestamp().isBefore(from) && !conversation.getTimestamp().isAfter(to)) {
+                    conversations.putIfAbsent(conversation.getId(), conversation);
+                }
+            }
+            if (conversations.size() >= limit) {
+                break;
+            }
+        }
+        
+        return conversations.values().stream()
+            .sorted(Comparator.comparing(Conversation::getTimestamp).thenComparing(Conversation::getId))
+            .limit(limit)
+            .toList();
+    }
+    
+    /**
+     * Parcourt les tours archivés de l'intervalle segment par segment, dans l'ordre des segments : un seul
+     * segment est en mémoire à la fois, quelle que soit la taille de l'intervalle. Un tour n'étant indexé
+     * qu'une fois, aucun doublon n'est à éliminer.
+     *
+     * @return le nombre de tours parcourus
+     */
+    public long forEachArchived(LocalDateTime from, LocalDateTime to, ConversationVisitor visitor) throws IOException {
+        long visited = 0;
+        for (ArchiveSegment segment : overlapping(from, to)) {
+            for (Conversation conversation : readSegment(segment)) {
+                if (!conversation.getTimestamp().isBefore(from) && !conversation.getTimestamp().isAfter(to)) {
+                    visitor.visit(conversation);
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+    
+    /**
+     * Tours archivés d'une conversation. Les segments ne sont pas indexés par conversation :
+     * tous sont parcourus, ce qui réserve cette lecture aux consultations ponctuelles.
+     */
+    public List<Conversation> readArchivedConversation(String conversationId) throws IOException {
+        Map<Long, Conversation> turns = new LinkedHashMap<>();
+        for (ArchiveSegment segment : segments()) {
+            for (Conversation conversation : readSegment(segment)) {
+                if (conversationId.equals(conversation.getConversationId())) {
+                    turns.putIfAbsent(conversation.getId(), conversation);
+                }
+            }
+        }
+        
+        return turns.values().stream()
+            .sorted(Comparator.comparing((Conversation c) -> c.getTurnIndex() != null ? c.getTurnIndex() : 0))
+            .toList();
+    }
+    
+    /**
+     * Index des segments, relu s'il a été modifié depuis (archivage lancé par une autre instance)
+     */
+    public synchronized List<ArchiveSegment> segments() throws IOException {
+        Path index = directory.resolve(INDEX_FILE);
+        if (!Files.exists(index)) {
+            return List.of();
+        }
+        
+        FileTime modifiedAt = Files.getLastModifiedTime(index);
+        if (!modifiedAt.equals(indexModifiedAt)) {
+            segments = loadIndex(index);
+            indexModifiedAt = modifiedAt;
+        }
+        return segments;
+    }
+    
+    /**
+     * Totaux des tours archivés, ajoutés à ceux de la table par les statistiques
+     */
+    public ArchiveTotals totals() {
+        try {
+            long conversations = 0;
+            long positiveFeedback = 0;
+            long negativeFeedback = 0;
+            for (ArchiveSegment segment : segments()) {
+                conversations += segment.count();
+                positiveFeedback += segment.positiveFeedback();
+                negativeFeedback += segment.negativeFeedback();
+            }
+            return new ArchiveTotals(conversations, positiveFeedback, negativeFeedback);
+        
+        } catch (IOException e) {
+            log.warn("Index de l'archive illisible: {}", e.getMessage());
+            return new ArchiveTotals(0, 0, 0);
+        }
+    }
+    
+    private List<ArchiveSegment> overlapping(LocalDateTime from, LocalDateTime to) throws IOException {
+        return segments().stream()
+            .filter(segment -> !segment.to().isBefore(from) && !segment.from().isAfter(to))
+            .sorted(Comparator.comparing(ArchiveSegment::from))
+            .toList();
+    }
+    
+    private ArchiveSegment writeSegment(String name, List<Conversation> conversations) throws IOException {
+        Path target = directory.resolve(name);
+        Files.createDirectories(target.getParent());
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temporary)), StandardCharsets.UTF_8))) {
+            for (Conversation conversation : conversations) {
+                writer.write(objectMapper.writeValueAsString(conversation));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        
+        return describe(name, conversations, Instant.now());
+    }
+    
+    private static ArchiveSegment describe(String name, List<Conversation> conversations, Instant archivedAt) {
+        long positive = conversations.stream().filter(c -> Boolean.TRUE.equals(c.getFeedbackUseful())).count();
+        long negative = conversations.stream().filter(c -> Boolean.FALSE.equals(c.getFeedbackUseful())).count();
+        
+        return new ArchiveSegment(
+            name,
+            conversations.stream().map(Conversation::getTimestamp).min(Comparator.naturalOrder()).orElseThrow(),
+            conversations.stream().map(Conversation::getTimestamp).max(Comparator.naturalOrder()).orElseThrow(),
+            conversations.size(),
+            positive,
+            negative,
+            conversations.stream().mapToLong(Conversation::getId).min().orElseThrow(),
+            conversations.stream().mapToLong(Conversation::getId).max().orElseThrow(),
+            archivedAt);
+    }
+    
+    private synchronized void appendToIndex(ArchiveSegment segment) throws IOException {
+        Files.createDirectories(directory);
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(INDEX_FILE), StandardCharsets.UTF_8,
+                                                             StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(objectMapper.writeValueAsString(segment));
+            writer.newLine();
+        }
+    }
+    
+    private List<ArchiveSegment> loadIndex(Path index) throws IOException {
+        List<ArchiveSegment> loaded = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    loaded.add(objectMapper.readValue(line, ArchiveSegment.class));
+                }
+            }
+        }
+        return List.copyOf(loaded);
+    }
+    
+    private List<Conversation> readSegment(ArchiveSegment segment) throws IOException {
+        return readSegment(directory.resolve(segment.segment()));
+    }
+    
+    private List<Conversation> readSegment(Path file) throws IOException {
+        List<Conversation> conversations = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    conversations.add(objectMapper.readValue(line, Conversation.class));
+                }
+            }
+        }
+        return conversations;
+    }
+    
+    /**
+     * Entrée de l'index : un fichier de segment et ce qu'il contient
+     */
+    public record ArchiveSegment(String segment, LocalDateTime from, LocalDateTime to, int count,
+                                 long positiveFeedback, long negativeFeedback, long minId, long maxId,
+                                 Instant archivedAt) {
+    }
+    
+    public record ArchiveTotals(long conversations, long positiveFeedback, long negativeFeedback) {
+    }
+    
+    @FunctionalInterface
+    public interface ConversationVisitor {
+        
+        void visit(Conversation conversation) throws IOException;
+    }
+}
\ No newline at end of file
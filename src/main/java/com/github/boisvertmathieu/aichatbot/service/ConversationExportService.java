@@ -0,0 +1,91 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.github.boisvertmathieu.aichatbot.entity.Conversation;
+import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Export NDJSON des conversations d'une période, écrit au fil de la lecture. Les tours déjà archivés
+ * ({@code chatbot.archive.max-age}) sont relus segment par segment, puis ceux encore en table arrivent
+ * par paquets de {@code fetch-size} depuis un curseur, chaque entité étant détachée une fois écrite :
+ * la mémoire utilisée ne dépend pas de la taille de la période.
+ */
+@Service
+@Slf4j
+public class ConversationExportService {
+    
+    private final ConversationRepository conversationRepository;
+    private final ConversationArchiveService conversationArchiveService;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    
+    public ConversationExportService(ConversationRepository conversationRepository,
+                                     ConversationArchiveService conversationArchiveService,
+                                     EntityManager entityManager,
+                                     ObjectMapper objectMapper,
+                                     PlatformTransactionManager transactionManager) {
+        this.conversationRepository = conversationRepository;
+        this.conversationArchiveService = conversationArchiveService;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        
+        // Le curseur exige une transaction, ouverte seulement une fois l'archive relue
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+    
+    /**
+     * @return le nombre de tours exportés, archivés compris
+     */
+    public long export(LocalDateTime from, LocalDateTime to, OutputStream output) throws IOException {
+        long archived;
+        long stored;
+        
+        try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(output)) {
+            archived = conversationArchiveService.forEachArchived(from, to, writer::write);
+            
+            try {
+                stored = transactionTemplate.execute(status -> exportStored(from, to, writer));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        
+        log.info("{} tours de conversation exportés entre {} et {} (dont {} archivés)",
+                 archived + stored, from, to, archived);
+        return archived + stored;
+    }
+    
+    private long exportStored(LocalDateTime from, LocalDateTime to, SequenceWriter writer) {
+        long exported = 0;
+        
+        try (Stream<Conversation> conversations = conversationRepository.streamByDateRange(from, to)) {
+            Iterator<Conversation> iterator = conversations.iterator();
+            while (iterator.hasNext()) {
+                Conversation conversation = iterator.next();
+                writer.write(conversation);
+                // Sans détachement, le contexte de persistance garderait chaque ligne jusqu'à la fin
+                entityManager.detach(conversation);
+                exported++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        return exported;
+    }
+}
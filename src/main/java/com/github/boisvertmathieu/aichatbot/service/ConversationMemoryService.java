@@ -0,0 +1,316 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.entity.Conversation;
+import com.github.boisvertmathieu.aichatbot.entity.ConversationSummary;
+import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
+import com.github.boisvertmathieu.aichatbot.repository.ConversationSummaryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Mémoire des conversations multi-tours. Les derniers tours sont envoyés tels quels au modèle ;
+ * les plus anciens sont condensés en arrière-plan dans un résumé glissant, de sorte que la taille
+ * de l'historique reste à peu près constante quelle que soit la longueur de la conversation.
+ * Les conversations actives sont gardées dans un cache LRU borné et rechargées depuis la base au besoin.
+ * <p>
+ * Les requêtes d'une même conversation peuvent arriver sur plusieurs nœuds : le cache n'est qu'indicatif.
+ * Il est rechargé dès que la base contient un tour qu'il ne connaît pas, et l'index de tour qu'il propose
+ * est réattribué à l'enregistrement s'il est déjà pris ({@link ConversationPersistenceService}).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationMemoryService {
+    
+    private static final String SUMMARY_INSTRUCTIONS = "Résume la conversation suivante entre un utilisateur et un assistant "
+        + "de support technique en conservant les faits, versions, noms de classes, propriétés et décisions utiles "
+        + "pour la suite. Réponds uniquement par le résumé, en français, en moins de %d mots.";
+    
+    private final ConversationRepository conversationRepository;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final ChatModel chatModel;
+    private final LlmBulkhead llmBulkhead;
+    private final TokenAdmissionService tokenAdmissionService;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${chatbot.memory.recent-turns:4}")
+    private int recentTurns;
+    
+    @Value("${chatbot.memory.max-conversations:10000}")
+    private int maxConversations;
+    
+    @Value("${chatbot.memory.summary-max-words:250}")
+    private int summaryMaxWords;
+    
+    // Ordre d'accès pour l'éviction LRU, protégé par le moniteur de l'instance
+    private final LinkedHashMap<String, ConversationMemory> memories = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final ExecutorService summarizer = Executors.newVirtualThreadPerTaskExecutor();
+    
+    @PostConstruct
+    void registerMetrics() {
+        meterRegistry.gauge("chatbot.memory.conversations", this, ConversationMemoryService::size);
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        summarizer.shutdown();
+    }
+    
+    /**
+     * Mémoire de la conversation, depuis le cache s'il connaît le dernier tour enregistré en base,
+     * sinon rechargée depuis la base
+     */
+    public ConversationMemory memoryOf(String conversationId) {
+        ConversationMemory cached;
+        synchronized (this) {
+            cached = memories.get(conversationId);
+        }
+        
+        if (cached != null) {
+            if (!cached.isBehind(conversationRepository.findMaxTurnIndex(conversationId))) {
+                return cached;
+            }
+            // Tours enregistrés par un autre nœud : l'historique et l'index de tour du cache sont périmés
+            log.debug("Conversation {} modifiée par un autre nœud, historique rechargé", conversationId);
+        }
+        
+        ConversationMemory loaded = load(conversationId);
+        
+        synchronized (this) {
+            // Un autre thread a pu charger la même conversation entre-temps
+            ConversationMemory memory = memories.get(conversationId);
+            if (memory != null && memory != cached) {
+                return memory;
+            }
+            memories.put(conversationId, loaded);
+            evictOverflow();
+            return loaded;
+        }
+    }
+    
+    /**
+     * Ajoute un tour validé en base et déclenche si besoin le résumé des tours les plus anciens.
+     * {@code turnIndex} est l'index finalement enregistré, qui peut différer de celui réservé.
+     */
+    public void recordTurn(ConversationMemory memory, int turnIndex, String question, String response) {
+        if (memory.append(new Turn(turnIndex, question, response), recentTurns)) {
+            summarizer.execute(() -> summarize(memory));
+        }
+    }
+    
+    public synchronized int size() {
+        return memories.size();
+    }
+    
+    private ConversationMemory load(String conversationId) {
+        ConversationSummary summary = conversationSummaryRepository.findById(conversationId).orElse(null);
+        int summarizedThroughTurn = summary != null ? summary.getSummarizedThroughTurn() : -1;
+        
+        // Le résumé est en retard d'au plus quelques tours : au-delà du double, les tours sont ignorés
+        List<Conversation> recent = conversationRepository.findRecentTurns(
+            conversationId, summarizedThroughTurn, PageRequest.of(0, recentTurns * 2));
+        
+        Deque<Turn> turns = new ArrayDeque<>();
+        for (Conversation conversation : recent) {
+            turns.addFirst(new Turn(turnIndexOf(conversation), conversation.getQuestion(), conversation.getResponse()));
+        }
+        
+        int nextTurnIndex = recent.isEmpty()
+            ? conversationRepository.findFirstByConversationIdOrderByTurnIndexDesc(conversationId)
+                .map(c -> turnIndexOf(c) + 1)
+                .orElse(summarizedThroughTurn + 1)
+            : turnIndexOf(recent.get(0)) + 1;
+        
+        return new ConversationMemory(conversationId, summary != null ? summary.getSummary() : null,
+                                      turns, nextTurnIndex);
+    }
+    
+    private void summarize(ConversationMemory memory) {
+        try {
+            List<Turn> toSummarize = memory.turnsToSummarize(recentTurns);
+            if (toSummarize.isEmpty()) {
+                return;
+            }
+            
+            StringBuilder transcript = new StringBuilder();
+            if (memory.summary() != null) {
+                transcript.append("Résumé précédent: ").append(memory.summary()).append("\n\n");
+            }
+            for (Turn turn : toSummarize) {
+                transcript.append("Utilisateur: ").append(turn.question()).append("\n");
+                transcript.append("Assistant: ").append(turn.response()).append("\n");
+            }
+            
+            Prompt prompt = new Prompt(List.of(
+                new SystemMessage(String.format(SUMMARY_INSTRUCTIONS, summaryMaxWords)),
+                new UserMessage(transcript.toString())),
+                ChatOptions.builder().maxTokens(summaryMaxWords * 2).build());
+            
+            ChatResponse response = llmBulkhead.call(() -> chatModel.call(prompt));
+            String summary = response.getResult().getOutput().getText();
+            // Les résumés consomment le quota Azure OpenAI du service, sans être imputés à l'utilisateur
+            if (response.getMetadata() != null && response.getMetadata().getUsage() != null) {
+                tokenAdmissionService.debitGlobal(response.getMetadata().getUsage().getTotalTokens());
+            }
+            int summarizedThroughTurn = toSummarize.get(toSummarize.size() - 1).index();
+            
+            conversationSummaryRepository.save(ConversationSummary.builder()
+                .conversationId(memory.conversationId())
+                .summary(summary)
+                .summarizedThroughTurn(summarizedThroughTurn)
+                .build());
+            
+            memory.applySummary(summary, summarizedThroughTurn);
+            
+            log.debug("Conversation {} résumée jusqu'au tour {}", memory.conversationId(), summarizedThroughTurn);
+        
+        } catch (Exception e) {
+            // Les tours restent dans l'historique et seront résumés au prochain tour
+            log.warn("Impossible de résumer la conversation {}: {}", memory.conversationId(), e.getMessage());
+        } finally {
+            memory.summarizationDone();
+        }
+    }
+    
+    private void evictOverflow() {
+        while (memories.size() > maxConversations) {
+            Iterator<String> eldest = memories.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+    
+    private static int turnIndexOf(Conversation conversation) {
+        return conversation.getTurnIndex() != null ? conversation.getTurnIndex() : 0;
+    }
+    
+    public record Turn(int index, String question, String response) {
+    }
+    
+    /**
+     * État en mémoire d'une conversation : résumé des anciens tours et derniers tours non résumés
+     */
+    public static class ConversationMemory {
+        
+        private final String conversationId;
+        private final Deque<Turn> turns;
+        private String summary;
+        private int nextTurnIndex;
+        private boolean summarizing;
+        
+        ConversationMemory(String conversationId, String summary, Deque<Turn> turns, int nextTurnIndex) {
+            this.conversationId = conversationId;
+            this.summary = summary;
+            this.turns = turns;
+            this.nextTurnIndex = nextTurnIndex;
+        }
+        
+        public String conversationId() {
+            return conversationId;
+        }
+        
+        public synchronized String summary() {
+            return summary;
+        }
+        
+        public synchronized boolean hasHistory() {
+            return summary != null || !turns.isEmpty();
+        }
+        
+        /**
+         * Identifie l'historique courant : vide au premier tour, sinon propre à la conversation et au dernier tour
+         */
+        public synchronized String historyKey() {
+            if (!hasHistory()) {
+                return "";
+            }
+            int lastTurn = turns.isEmpty() ? -1 : turns.peekLast().index();
+            return conversationId + "@" + lastTurn + "#" + (summary != null ? summary.hashCode() : 0);
+        }
+        
+        /**
+         * Réserve l'index du prochain tour de la conversation, connu de ce nœud seulement
+         */
+        public synchronized int nextTurnIndex() {
+            return nextTurnIndex++;
+        }
+        
+        /**
+         * Vrai si la base contient un tour que ce cache n'a ni enregistré ni réservé
+         */
+        synchronized boolean isBehind(Integer latestStoredTurn) {
+            return latestStoredTurn != null && latestStoredTurn >= nextTurnIndex;
+        }
+        
+        /**
+         * Historique à insérer avant la question courante : le résumé, puis les tours récents
+         */
+        public synchronized List<Message> historyMessages() {
+            List<Message> messages = new ArrayList<>();
+            if (summary != null) {
+                messages.add(new SystemMessage("Résumé des échanges précédents de cette conversation: " + summary));
+            }
+            for (Turn turn : turns) {
+                messages.add(new UserMessage(turn.question()));
+                messages.add(new AssistantMessage(turn.response()));
+            }
+            return messages;
+        }
+        
+        /**
+         * Retourne true si un résumé doit être lancé
+         */
+        synchronized boolean append(Turn turn, int recentTurns) {
+            turns.addLast(turn);
+            nextTurnIndex = Math.max(nextTurnIndex, turn.index() + 1);
+            
+            // Borne dure si le résumé prend du retard ou échoue
+            while (turns.size() > recentTurns * 2) {
+                turns.removeFirst();
+            }
+            
+            if (turns.size() > recentTurns && !summarizing) {
+                summarizing = true;
+                return true;
+            }
+            return false;
+        }
+        
+        synchronized List<Turn> turnsToSummarize(int recentTurns) {
+            return turns.stream().limit(Math.max(0, turns.size() - recentTurns)).toList();
+        }
+        
+        synchronized void applySummary(String newSummary, int throughTurn) {
+            summary = newSummary;
+            turns.removeIf(turn -> turn.index() <= throughTurn);
+        }
+        
+        synchronized void summarizationDone() {
+            summarizing = false;
+        }
+    }
+}
\ No newline at end of file
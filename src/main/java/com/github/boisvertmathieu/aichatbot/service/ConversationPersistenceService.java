@@ -0,0 +1,370 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.boisvertmathieu.aichatbot.entity.Conversation;
+import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Enregistrement des tours de conversation, avec leur notification Teams (outbox) dans la même transaction.
+ * <p>
+ * En mode write-behind ({@code chatbot.persistence.write-behind.enabled}), les tours sont mis en file et
+ * insérés par lots JDBC toutes les {@code flush-interval-ms} ou dès {@code batch-size} tours en attente :
+ * la requête de chat n'attend plus la base. À l'arrêt, ce qui n'a pu être inséré est écrit dans un fichier
+ * NDJSON rejoué au démarrage suivant ; un tour rejeté même seul y est aussi conservé.
+ * <p>
+ * Un tour en file n'est visible que du nœud qui l'a reçu : le write-behind exige que les requêtes d'une
+ * conversation, feedback compris, soient routées vers le même nœud ({@code sticky-routing}).
+ */
+@Service
+@Slf4j
+public class ConversationPersistenceService {
+    
+    // Réattributions de l'index de tour tentées avant de considérer l'insertion comme rejetée
+    private static final int MAX_TURN_ATTEMPTS = 3;
+    
+    private final ConversationRepository conversationRepository;
+    private final TeamsNotificationService teamsNotificationService;
+    private final StatisticsService statisticsService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean writeBehind;
+    private final int batchSize;
+    private final Path spillFile;
+    private final Path deadLetterFile;
+    private final LinkedBlockingDeque<Conversation> pending;
+    // Conversations du lot retiré de la file mais pas encore validé en base
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ExecutorService flusher = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter flushedConversations;
+    private final Counter failedFlushes;
+    
+    public ConversationPersistenceService(ConversationRepository conversationRepository,
+                                          TeamsNotificationService teamsNotificationService,
+                                          StatisticsService statisticsService,
+                                          ObjectMapper objectMapper,
+                                          PlatformTransactionManager transactionManager,
+                                          MeterRegistry meterRegistry,
+                                          @Value("${chatbot.persistence.write-behind.enabled:false}") boolean writeBehind,
+                                          @Value("${chatbot.persistence.write-behind.sticky-routing:false}") boolean stickyRouting,
+                                          @Value("${chatbot.persistence.write-behind.batch-size:200}") int batchSize,
+                                          @Value("${chatbot.persistence.write-behind.queue-capacity:10000}") int queueCapacity,
+                                          @Value("${chatbot.persistence.write-behind.spill-file:./data/conversations-spill.ndjson}")
+                                          String spillFile) {
+        if (writeBehind && !stickyRouting) {
+            throw new IllegalStateException("Le write-behind exige que les requêtes d'une conversation soient routées "
+                + "vers le même nœud : activer chatbot.persistence.write-behind.sticky-routing une fois ce routage en place");
+        }
+        
+        this.conversationRepository = conversationRepository;
+        this.teamsNotificationService = teamsNotificationService;
+        this.statisticsService = statisticsService;
+        this.objectMapper = objectMapper;
+        this.writeBehind = writeBehind;
+        this.batchSize = batchSize;
+        this.spillFile = Path.of(spillFile);
+        this.deadLetterFile = Path.of(spillFile + ".rejected");
+        this.pending = new LinkedBlockingDeque<>(queueCapacity);
+        
+        // Transaction propre au lot, y compris quand le vidage est déclenché depuis la transaction du feedback
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        
+        this.flushedConversations = meterRegistry.counter("chatbot.persistence.write-behind.flushed");
+        this.failedFlushes = meterRegistry.counter("chatbot.persistence.write-behind.failures");
+        meterRegistry.gauge("chatbot.persistence.write-behind.pending", pending, LinkedBlockingDeque::size);
+    }
+    
+    /**
+     * Enregistre le tour et met sa notification Teams en outbox : immédiatement, ou au prochain lot en write-behind
+     */
+    public void save(Conversation conversation) {
+        if (!writeBehind) {
+            persistReassigningTurn(conversation);
+            return;
+        }
+        
+        if (!pending.offer(conversation)) {
+            // File pleine : la requête vide elle-même un lot plutôt que de perdre le tour
+            flush();
+            if (!pending.offer(conversation)) {
+                // Base toujours indisponible : le tour est mis à l'abri sur disque, rejoué au démarrage
+                append(spillFile, List.of(conversation));
+            }
+        }
+        
+        if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+    
+    /**
+     * Vide la file si un tour de la conversation y attend encore, ou attend la fin du lot en cours
+     * d'insertion qui le contient, pour que le feedback le trouve en base
+     */
+    public void flushPending(String conversationId) {
+        flushPending(Set.of(conversationId));
+    }
+    
+    /**
+     * Variante ensembliste pour le feedback par lots : une seule passe sur la file, un seul vidage
+     */
+    public void flushPending(Collection<String> conversationIds) {
+        if (!writeBehind) {
+            return;
+        }
+        
+        Set<String> wanted = conversationIds instanceof Set<String> set ? set : new HashSet<>(conversationIds);
+        // La file d'abord : un tour est marqué en cours d'insertion avant d'en être retiré
+        boolean waiting = pending.stream().anyMatch(c -> wanted.contains(c.getConversationId()))
+            || inFlight.stream().anyMatch(wanted::contains);
+        if (waiting) {
+            // Le verrou n'est obtenu qu'une fois le lot en cours validé
+            flush();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${chatbot.persistence.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        if (!writeBehind) {
+            return;
+        }
+        
+        flushLock.lock();
+        try {
+            List<Conversation> batch = new ArrayList<>(batchSize);
+            while (takeBatch(batch) > 0) {
+                List<Conversation> retry = persistBatch(batch);
+                if (!retry.isEmpty()) {
+                    // Base indisponible : les tours reprennent leur place en tête de file
+                    requeue(retry);
+                }
+                batch.clear();
+                inFlight.clear();
+                if (!retry.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            inFlight.clear();
+            flushLock.unlock();
+        }
+    }
+    
+    /**
+     * Rejoue les tours écrits sur disque lors d'un arrêt précédent
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replaySpilledConversations() {
+        if (!Files.exists(spillFile)) {
+            return;
+        }
+        
+        try {
+            List<Conversation> spilled = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        spilled.add(objectMapper.readValue(line, Conversation.class));
+                    }
+                }
+            }
+            
+            if (writeBehind) {
+                // Supprimé avant la remise en file : ce qui ne pourra être inséré y sera de nouveau écrit
+                Files.delete(spillFile);
+                spilled.forEach(this::save);
+            } else {
+                for (int from = 0; from < spilled.size(); from += batchSize) {
+                    if (!persistBatch(spilled.subList(from, Math.min(spilled.size(), from + batchSize))).isEmpty()) {
+                        throw new IllegalStateException("base indisponible");
+                    }
+                }
+                Files.delete(spillFile);
+            }
+            
+            log.info("{} tours de conversation rejoués depuis {}", spilled.size(), spillFile);
+        
+        } catch (Exception e) {
+            log.error("Impossible de rejouer {}, le fichier est conservé: {}", spillFile, e.getMessage(), e);
+        }
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        flusher.close();
+        if (!writeBehind || pending.isEmpty()) {
+            return;
+        }
+        
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Dernier vidage impossible à l'arrêt: {}", e.getMessage());
+        }
+        
+        List<Conversation> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            append(spillFile, remaining);
+            log.warn("{} tours de conversation non enregistrés écrits dans {}", remaining.size(), spillFile);
+        }
+    }
+    
+    /**
+     * Un lot par transaction (inserts groupés par Hibernate) ; en cas d'échec, chaque tour est réessayé
+     * seul pour isoler ceux que la base rejette, conservés à part
+     *
+     * @return les tours à réessayer plus tard, si la base est indisponible
+     */
+    private List<Conversation> persistBatch(List<Conversation> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(this::persist));
+            flushedConversations.increment(batch.size());
+            return List.of();
+        } catch (Exception e) {
+            failedFlushes.increment();
+            log.warn("Échec de l'insertion d'un lot de {} tours, nouvel essai tour par tour: {}",
+                     batch.size(), e.getMessage());
+        }
+        
+        // Les identifiants attribués par la tentative annulée ne sont plus valables
+        batch.forEach(conversation -> conversation.setId(null));
+        
+        List<Conversation> rejected = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Conversation conversation = batch.get(i);
+            try {
+                persistReassigningTurn(conversation);
+                flushedConversations.increment();
+            } catch (DataIntegrityViolationException e) {
+                log.error("Tour {} de la conversation {} rejeté: {}",
+                          conversation.getTurnIndex(), conversation.getConversationId(), e.getMessage());
+                rejected.add(conversation);
+            } catch (Exception e) {
+                conversation.setId(null);
+                appendRejected(rejected);
+                return new ArrayList<>(batch.subList(i, batch.size()));
+            }
+        }
+        
+        appendRejected(rejected);
+        return List.of();
+    }
+    
+    /**
+     * Retire un lot de la tête de file. Seul le détenteur de {@code flushLock} retire ou remet des tours
+     * en tête : le tour lu est bien celui retiré, et il est marqué en cours d'insertion avant de quitter la file.
+     */
+    private int takeBatch(List<Conversation> batch) {
+        Conversation next;
+        while (batch.size() < batchSize && (next = pending.peekFirst()) != null) {
+            inFlight.add(next.getConversationId());
+            pending.pollFirst();
+            batch.add(next);
+        }
+        return batch.size();
+    }
+    
+    private void requeue(List<Conversation> conversations) {
+        for (int i = conversations.size() - 1; i >= 0; i--) {
+            if (!pending.offerFirst(conversations.get(i))) {
+                // File remplie entre-temps : le reste est mis à l'abri sur disque, rejoué au démarrage
+                append(spillFile, conversations.subList(0, i + 1));
+                return;
+            }
+        }
+    }
+    
+    private void appendRejected(List<Conversation> rejected) {
+        if (!rejected.isEmpty()) {
+            append(deadLetterFile, rejected);
+        }
+    }
+    
+    /**
+     * Insère le tour dans sa propre transaction. L'index de tour proposé par la mémoire de ce nœud peut
+     * avoir été pris par un autre nœud (uk_conversations_turn) : il est alors réattribué après le dernier
+     * tour enregistré et l'insertion retentée.
+     */
+    private void persistReassigningTurn(Conversation conversation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> persist(conversation));
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= MAX_TURN_ATTEMPTS) {
+                    throw e;
+                }
+                
+                conversation.setId(null);
+                Integer latestTurn = conversationRepository.findMaxTurnIndex(conversation.getConversationId());
+                int turnIndex = latestTurn != null ? latestTurn + 1 : 0;
+                log.warn("Tour {} de la conversation {} déjà enregistré, réattribué au tour {}",
+                         conversation.getTurnIndex(), conversation.getConversationId(), turnIndex);
+                conversation.setTurnIndex(turnIndex);
+            }
+        }
+    }
+    
+    private void persist(Conversation conversation) {
+        conversationRepository.save(conversation);
+        statisticsService.onConversationSaved();
+        // Notification Teams via l'outbox, livrée en arrière-plan (canal de test par défaut)
+        teamsNotificationService.sendResponse(conversation.getConversationId(), conversation.getResponse());
+    }
+    
+    private synchronized void append(Path file, List<Conversation> conversations) {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                                                                 StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Conversation conversation : conversations) {
+                    writer.write(objectMapper.writeValueAsString(conversation));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Impossible d'écrire {} tours dans {}: {}", conversations.size(), file, e.getMessage(), e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Découpe un texte en passages de taille bornée qui se chevauchent.
+ * Les coupures se font de préférence sur un paragraphe, puis une fin de phrase, puis un espace.
+ */
+@Component
+public class DocumentChunker {
+    
+    private final int maxChars;
+    private final int overlapChars;
+    
+    public DocumentChunker(@Value("${chatbot.chunking.max-chars:1200}") int maxChars,
+                           @Value("${chatbot.chunking.overlap-chars:200}") int overlapChars) {
+        if (overlapChars >= maxChars) {
+            throw new IllegalArgumentException("Le chevauchement doit être inférieur à la taille maximale d'un passage");
+        }
+        this.maxChars = maxChars;
+        this.overlapChars = overlapChars;
+    }
+    
+    public List<TextChunk> split(String text) {
+        List<TextChunk> chunks = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return chunks;
+        }
+        
+        int length = text.length();
+        int start = skipWhitespace(text, 0);
+        
+        while (start < length) {
+            int end = Math.min(start + maxChars, length);
+            if (end < length) {
+                end = findBreak(text, start, end);
+            }
+            
+            String content = text.substring(start, end).strip();
+            if (!content.isEmpty()) {
+                chunks.add(new TextChunk(chunks.size(), start, end, content));
+            }
+            
+            if (end >= length) {
+                break;
+            }
+            
+            // Le passage suivant reprend les derniers caractères, à partir d'un début de mot proche ;
+            // sans espace à proximité (jeton très long), la coupure est franche pour garantir l'avancée
+            int overlapStart = Math.max(end - overlapChars, start + 1);
+            int limit = Math.max(start + 1, overlapStart - overlapChars / 2);
+            int next = overlapStart;
+            while (next > limit && !Character.isWhitespace(text.charAt(next - 1))) {
+                next--;
+            }
+            if (!Character.isWhitespace(text.charAt(next - 1))) {
+                next = overlapStart;
+            }
+            start = skipWhitespace(text, next);
+        }
+        
+        return chunks;
+    }
+    
+    private int findBreak(String text, int start, int end) {
+        int minimum = start + maxChars / 2;
+        
+        int paragraph = text.lastIndexOf("\n\n", end);
+        if (paragraph >= minimum) {
+            return paragraph;
+        }
+        
+        for (int i = end - 1; i >= minimum; i--) {
+            char c = text.charAt(i);
+            if ((c == '.' || c == '!' || c == '?' || c == '\n') && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1)))) {
+                return i + 1;
+            }
+        }
+        
+        for (int i = end - 1; i >= minimum; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        
+        return end;
+    }
+    
+    private static int skipWhitespace(String text, int index) {
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+    
+    public record TextChunk(int index, int startOffset, int endOffset, String content) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.dto.FeedbackRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Application de feedbacks par lots : pour chaque paquet de {@code chunk-size} conversations, une requête
+ * retrouve le dernier tour de toutes les conversations, puis un lot JDBC les met à jour, dans une
+ * transaction courte propre au paquet. Un paquet en échec n'annule pas les précédents.
+ */
+@Service
+@Slf4j
+public class FeedbackBatchService {
+    
+    // Le dernier tour d'une conversation ; turn_index nul pour les conversations antérieures au multi-tours
+    private static final String SELECT_LATEST_TURNS =
+        "SELECT c.id, c.conversation_id, c.feedback_useful FROM conversations c " +
+        "WHERE c.conversation_id IN (:conversationIds) " +
+        "AND COALESCE(c.turn_index, 0) = (SELECT MAX(COALESCE(l.turn_index, 0)) FROM conversations l " +
+        "WHERE l.conversation_id = c.conversation_id)";
+    
+    private static final String UPDATE_FEEDBACK =
+        "UPDATE conversations SET feedback_useful = :useful, corrected_response = :correctedResponse, " +
+        "feedback_timestamp = :feedbackTimestamp WHERE id = :id";
+    
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConversationPersistenceService conversationPersistenceService;
+    private final StatisticsService statisticsService;
+    private final int chunkSize;
+    
+    public FeedbackBatchService(NamedParameterJdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                ConversationPersistenceService conversationPersistenceService,
+                                StatisticsService statisticsService,
+                                // SQL Server limite une requête à 2100 paramètres : la clause IN en dépend
+                                @Value("${chatbot.feedback.batch.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.conversationPersistenceService = conversationPersistenceService;
+        this.statisticsService = statisticsService;
+        this.chunkSize = Math.max(1, Math.min(chunkSize, 2000));
+    }
+    
+    /**
+     * Applique les feedbacks et retourne un résultat par élément, dans l'ordre de la requête.
+     * Pour une même conversation, le dernier feedback du lot l'emporte, comme s'ils étaient envoyés un à un.
+     */
+    public List<ItemResult> apply(List<FeedbackRequest> items) {
+        ItemResult[] results = new ItemResult[items.size()];
+        Map<String, Integer> latestItems = new LinkedHashMap<>();
+        
+        for (int i = 0; i < items.size(); i++) {
+            FeedbackRequest item = items.get(i);
+            if (item == null || item.getConversationId() == null || item.getConversationId().isBlank()
+                    || item.getUseful() == null) {
+                results[i] = new ItemResult(item != null ? item.getConversationId() : null, Status.INVALID);
+                continue;
+            }
+            
+            Integer superseded = latestItems.put(item.getConversationId(), i);
+            if (superseded != null) {
+                results[superseded] = new ItemResult(item.getConversationId(), Status.SUPERSEDED);
+            }
+        }
+        
+        // Les derniers tours peuvent encore attendre en write-behind
+        conversationPersistenceService.flushPending(latestItems.keySet());
+        
+        List<String> conversationIds = new ArrayList<>(latestItems.keySet());
+        for (int from = 0; from < conversationIds.size(); from += chunkSize) {
+            List<String> chunk = conversationIds.subList(from, Math.min(from + chunkSize, conversationIds.size()));
+            
+            Status failure = null;
+            Set<String> applied = Set.of();
+            try {
+                applied = transactionTemplate.execute(status -> applyChunk(chunk, items, latestItems));
+            } catch (Exception e) {
+                failure = Status.FAILED;
+                log.error("Erreur lors de l'application d'un paquet de {} feedbacks: {}", chunk.size(), e.getMessage(), e);
+            }
+            
+            for (String conversationId : chunk) {
+                Status status = failure != null ? failure
+                    : applied.contains(conversationId) ? Status.APPLIED : Status.NOT_FOUND;
+                results[latestItems.get(conversationId)] = new ItemResult(conversationId, status);
+            }
+        }
+        
+        return Arrays.asList(results);
+    }
+    
+    private Set<String> applyChunk(List<String> chunk, List<FeedbackRequest> items, Map<String, Integer> latestItems) {
+        Map<String, LatestTurn> latestTurns = new HashMap<>();
+        jdbcTemplate.query(SELECT_LATEST_TURNS, Map.of("conversationIds", chunk), rs -> {
+            boolean useful = rs.getBoolean("feedback_useful");
+            latestTurns.put(rs.getString("conversation_id"),
+                            new LatestTurn(rs.getLong("id"), rs.wasNull() ? null : useful));
+        });
+        
+        if (latestTurns.isEmpty()) {
+            return Set.of();
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<SqlParameterSource> updates = new ArrayList<>(latestTurns.size());
+        latestTurns.forEach((conversationId, turn) -> {
+            FeedbackRequest item = items.get(latestItems.get(conversationId));
+            updates.add(new MapSqlParameterSource()
+                .addValue("id", turn.id())
+                .addValue("useful", item.getUseful())
+                .addValue("correctedResponse", item.getCorrectedResponse(), Types.VARCHAR)
+                .addValue("feedbackTimestamp", now));
+            
+            // Compteurs ajustés à la validation de la transaction du paquet
+            statisticsService.onFeedbackChanged(turn.previousUseful(), item.getUseful());
+        });
+        
+        jdbcTemplate.batchUpdate(UPDATE_FEEDBACK, updates.toArray(SqlParameterSource[]::new));
+        return latestTurns.keySet();
+    }
+    
+    private record LatestTurn(long id, Boolean previousUseful) {
+    }
+    
+    public enum Status {
+        APPLIED, NOT_FOUND, INVALID, SUPERSEDED, FAILED
+    }
+    
+    public record ItemResult(String conversationId, Status status) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Recherche hybride : la recherche vectorielle et la recherche lexicale BM25 s'exécutent en parallèle,
+ * puis leurs classements sont fusionnés par Reciprocal Rank Fusion (score = somme de 1 / (k + rang)).
+ * Les passages vectoriels ont passé {@code similarity-threshold} ; ceux trouvés par BM25 seulement
+ * doivent atteindre {@code min-fused-score}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HybridRetriever {
+    
+    private final VectorStore vectorStore;
+    private final LexicalIndex lexicalIndex;
+    private final ChatMetrics chatMetrics;
+    
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    @Value("${chatbot.rag.max-results:5}")
+    private int maxResults;
+    
+    @Value("${chatbot.rag.similarity-threshold:0.7}")
+    private double similarityThreshold;
+    
+    @Value("${chatbot.rag.lexical.enabled:true}")
+    private boolean lexicalEnabled;
+    
+    @Value("${chatbot.rag.candidates:20}")
+    private int candidates;
+    
+    @Value("${chatbot.rag.rrf-k:60}")
+    private int rrfK;
+    
+    @Value("${chatbot.rag.min-fused-score:0.016}")
+    private double minFusedScore;
+    
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+    
+    public List<Document> retrieve(String question) {
+        log.debug("Recherche de documents pertinents pour la question: {}", question);
+        
+        if (!lexicalEnabled) {
+            List<Document> results = vectorSearch(question, maxResults);
+            chatMetrics.recordRetrieval("vector", results);
+            return results;
+        }
+        
+        CompletableFuture<List<Document>> vectorResults = CompletableFuture.supplyAsync(
+            () -> vectorSearch(question, candidates), executor);
+        
+        // L'index lexical est en mémoire : il est interrogé sur le thread courant pendant la recherche vectorielle
+        List<Document> lexicalResults;
+        try {
+            lexicalResults = lexicalIndex.search(question, candidates);
+        } catch (Exception e) {
+            log.warn("Recherche lexicale impossible, repli sur la recherche vectorielle seule: {}", e.getMessage());
+            lexicalResults = List.of();
+        }
+        
+        List<Document> vectorDocuments;
+        try {
+            vectorDocuments = vectorResults.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        
+        List<Document> fused = fuse(vectorDocuments, lexicalResults, rrfK, minFusedScore, maxResults);
+        
+        chatMetrics.recordRetrieval("vector", vectorDocuments);
+        chatMetrics.recordRetrieval("lexical", lexicalResults);
+        chatMetrics.recordRetrieval("fused", fused);
+        
+        return fused;
+    }
+    
+    private List<Document> vectorSearch(String question, int topK) {
+        SearchRequest searchRequest = SearchRequest.builder()
+                .query(question)
+                .similarityThreshold(similarityThreshold)
+                .topK(topK)
+                .build();
+        
+        return vectorStore.similaritySearch(searchRequest);
+    }
+    
+    /**
+     * Fusion RRF des deux classements. Un passage absent des résultats vectoriels n'a pas été comparé à
+     * {@code similarity-threshold} : il n'est retenu que si son score fusionné atteint {@code minFusedScore}.
+     */
+    static List<Document> fuse(List<Document> vectorResults, List<Document> lexicalResults,
+                               int rrfK, double minFusedScore, int maxResults) {
+        Map<String, Double> fusedScores = new HashMap<>();
+        Map<String, Document> documents = new LinkedHashMap<>();
+        
+        accumulate(vectorResults, rrfK, fusedScores, documents);
+        accumulate(lexicalResults, rrfK, fusedScores, documents);
+        
+        Set<String> vectorIds = vectorResults.stream().map(Document::getId).collect(Collectors.toSet());
+        
+        log.debug("Fusion RRF: {} résultats vectoriels, {} résultats lexicaux, {} passages distincts",
+                 vectorResults.size(), lexicalResults.size(), documents.size());
+        
+        return documents.values().stream()
+            .filter(d -> vectorIds.contains(d.getId()) || fusedScores.get(d.getId()) >= minFusedScore)
+            .sorted(Comparator.comparingDouble((Document d) -> fusedScores.get(d.getId())).reversed())
+            .limit(maxResults)
+            .map(d -> Document.builder()
+                .id(d.getId())
+                .text(d.getText())
+                .metadata(d.getMetadata())
+                .score(fusedScores.get(d.getId()))
+                .build())
+            .toList();
+    }
+    
+    private static void accumulate(List<Document> ranking, int rrfK,
+                                   Map<String, Double> fusedScores, Map<String, Document> documents) {
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            Document document = ranking.get(rank);
+            fusedScores.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+            // Le document vectoriel, lu en premier, est conservé pour ses métadonnées d'origine
+            documents.putIfAbsent(document.getId(), document);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,209 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.entity.KnowledgeChunk;
+import com.github.boisvertmathieu.aichatbot.entity.KnowledgeDocument;
+import com.github.boisvertmathieu.aichatbot.repository.KnowledgeChunkRepository;
+import com.github.boisvertmathieu.aichatbot.vectorstore.HnswVectorStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Découpage des documents de connaissance en passages persistés dans {@code knowledge_chunks}.
+ * Chaque passage est embarqué et indexé séparément dans le vector store, ainsi que dans l'index lexical.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KnowledgeChunkService {
+    
+    private final KnowledgeChunkRepository knowledgeChunkRepository;
+    private final DocumentChunker documentChunker;
+    private final VectorDocumentMapper vectorDocumentMapper;
+    private final VectorStore vectorStore;
+    private final LexicalIndex lexicalIndex;
+    private final TransactionTemplate transactionTemplate;
+    
+    /**
+     * Redécoupe les documents et les indexe dans le vector store, passage par passage. Les nouveaux passages
+     * sont ajoutés avant le retrait des passages devenus obsolètes, puis les passages sont remplacés en base
+     * et dans l'index lexical : un échec du vector store laisse l'ancienne version consultable et entièrement
+     * à refaire au prochain passage. Retourne les documents Spring AI indexés.
+     * <p>
+     * Exception : l'entrée d'un document indexé avant le découpage en passages porte un identifiant aléatoire
+     * et la même métadonnée {@code id} que ses passages ; elle est retirée par filtre avant l'ajout des passages,
+     * qui seraient emportés sinon. Si l'ajout échoue ensuite, le document reste sans passage en base et sera
+     * repris au prochain passage.
+     */
+    public List<Document> index(List<KnowledgeDocument> documents) {
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        
+        IndexingPlan plan = plan(documents);
+        
+        if (!plan.unchunkedDocumentIds().isEmpty()) {
+            deleteWholeDocumentEntries(plan.unchunkedDocumentIds());
+        }
+        vectorStore.add(plan.vectorDocuments());
+        if (!plan.staleChunkIds().isEmpty()) {
+            vectorStore.delete(plan.staleChunkIds());
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!plan.replacedDocumentIds().isEmpty()) {
+                knowledgeChunkRepository.deleteByDocumentIds(plan.replacedDocumentIds());
+            }
+            knowledgeChunkRepository.saveAll(plan.newChunks());
+            
+            updateLexicalIndexAfterCommit(plan.vectorDocuments(), plan.staleChunkIds());
+        });
+        
+        log.debug("{} documents découpés en {} passages ({} passages obsolètes retirés, {} documents découpés pour la première fois)",
+                 documents.size(), plan.vectorDocuments().size(), plan.staleChunkIds().size(),
+                 plan.unchunkedDocumentIds().size());
+        
+        return plan.vectorDocuments();
+    }
+    
+    /**
+     * Compare le découpage courant des documents aux passages persistés, sans rien écrire
+     */
+    private IndexingPlan plan(List<KnowledgeDocument> documents) {
+        Map<String, List<KnowledgeChunk>> existingChunks = findChunksByDocument(documents);
+        
+        List<String> replacedDocumentIds = new ArrayList<>();
+        List<KnowledgeChunk> newChunks = new ArrayList<>();
+        List<String> staleChunkIds = new ArrayList<>();
+        List<String> unchunkedDocumentIds = new ArrayList<>();
+        List<Document> vectorDocuments = new ArrayList<>();
+        
+        for (KnowledgeDocument document : documents) {
+            List<KnowledgeChunk> chunks = split(document);
+            List<KnowledgeChunk> existing = existingChunks.getOrDefault(document.getDocumentId(), List.of());
+            
+            if (existing.isEmpty()) {
+                // Jamais découpé : une éventuelle entrée au niveau du document entier est à retirer
+                unchunkedDocumentIds.add(document.getDocumentId());
+                newChunks.addAll(chunks);
+            
+            } else if (!sameContent(existing, chunks)) {
+                Set<String> keptIds = chunks.stream().map(KnowledgeChunk::getChunkId).collect(Collectors.toSet());
+                existing.stream()
+                    .map(KnowledgeChunk::getChunkId)
+                    .filter(chunkId -> !keptIds.contains(chunkId))
+                    .forEach(staleChunkIds::add);
+                
+                replacedDocumentIds.add(document.getDocumentId());
+                newChunks.addAll(chunks);
+            
+            } else {
+                chunks = existing;
+            }
+            
+            vectorDocuments.addAll(vectorDocumentMapper.toVectorDocuments(document, chunks));
+        }
+        
+        return new IndexingPlan(vectorDocuments, newChunks, replacedDocumentIds, staleChunkIds, unchunkedDocumentIds);
+    }
+    
+    /**
+     * Retire du store distant les entrées indexées au niveau du document entier : leur identifiant était généré
+     * par Spring AI, seule la métadonnée {@code id} désigne le document. Le store HNSW est alimenté depuis
+     * {@code knowledge_chunks} et n'en contient jamais (il refuse d'ailleurs les filtres).
+     */
+    private void deleteWholeDocumentEntries(List<String> documentIds) {
+        if (vectorStore instanceof HnswVectorStore) {
+            return;
+        }
+        
+        vectorStore.delete(new FilterExpressionBuilder().in("id", new ArrayList<Object>(documentIds)).build());
+    }
+    
+    /**
+     * Documents Spring AI des passages déjà persistés, sans écriture. Les documents jamais découpés
+     * sont découpés à la volée.
+     */
+    @Transactional(readOnly = true)
+    public List<Document> loadVectorDocuments(List<KnowledgeDocument> documents) {
+        Map<String, List<KnowledgeChunk>> existingChunks = findChunksByDocument(documents);
+        
+        List<Document> vectorDocuments = new ArrayList<>();
+        for (KnowledgeDocument document : documents) {
+            List<KnowledgeChunk> chunks = existingChunks.get(document.getDocumentId());
+            vectorDocuments.addAll(vectorDocumentMapper.toVectorDocuments(
+                document, chunks != null ? chunks : split(document)));
+        }
+        return vectorDocuments;
+    }
+    
+    /**
+     * L'index lexical n'est mis à jour qu'une fois les passages validés en base, donc après l'upsert
+     * du vector store
+     */
+    private void updateLexicalIndexAfterCommit(List<Document> vectorDocuments, List<String> staleChunkIds) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lexicalIndex.remove(staleChunkIds);
+                lexicalIndex.upsert(vectorDocuments);
+            }
+        });
+    }
+    
+    private Map<String, List<KnowledgeChunk>> findChunksByDocument(List<KnowledgeDocument> documents) {
+        return knowledgeChunkRepository.findByDocumentIdInOrderByDocumentIdAscChunkIndexAsc(
+                documents.stream().map(KnowledgeDocument::getDocumentId).toList())
+            .stream()
+            .collect(Collectors.groupingBy(KnowledgeChunk::getDocumentId));
+    }
+    
+    private List<KnowledgeChunk> split(KnowledgeDocument document) {
+        return documentChunker.split(document.getContent()).stream()
+            .map(chunk -> KnowledgeChunk.builder()
+                .chunkId(chunkId(document.getDocumentId(), chunk.index()))
+                .documentId(document.getDocumentId())
+                .chunkIndex(chunk.index())
+                .content(chunk.content())
+                .startOffset(chunk.startOffset())
+                .endOffset(chunk.endOffset())
+                .embeddingHash(ContentHash.sha256(chunk.content()))
+                .build())
+            .toList();
+    }
+    
+    private static boolean sameContent(List<KnowledgeChunk> existing, List<KnowledgeChunk> chunks) {
+        if (existing.size() != chunks.size()) {
+            return false;
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            if (!chunks.get(i).getEmbeddingHash().equals(existing.get(i).getEmbeddingHash())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private record IndexingPlan(List<Document> vectorDocuments, List<KnowledgeChunk> newChunks,
+                                List<String> replacedDocumentIds, List<String> staleChunkIds,
+                                List<String> unchunkedDocumentIds) {
+    }
+    
+    // Les clés Azure AI Search n'acceptent que lettres, chiffres, '_', '-' et '='
+    static String chunkId(String documentId, int index) {
+        return documentId + "-chunk-" + index;
+    }
+}
\ No newline at end of file
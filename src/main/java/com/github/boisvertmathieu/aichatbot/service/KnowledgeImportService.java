@@ -0,0 +1,519 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.boisvertmathieu.aichatbot.repository.KnowledgeDocumentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Import en masse de documents de connaissance depuis un fichier JSONL (un document par ligne) ou une
+ * archive zip de fichiers markdown.
+ * <p>
+ * L'envoi est recopié dans un fichier temporaire, puis lu au fil de l'eau en tâche de fond : les documents
+ * sont écrits par lots JDBC de {@code batch-size}, et chaque lot écrit est aussitôt embarqué et indexé
+ * ({@link KnowledgeIndexingService#syncDocuments}) pendant que la lecture continue. Le nombre de lots
+ * en cours d'indexation est borné, si bien que la mémoire utilisée ne dépend pas de la taille de l'envoi.
+ * L'avancement est consultable par identifiant de tâche, sur le nœud qui a reçu l'envoi.
+ */
+@Service
+@Slf4j
+public class KnowledgeImportService {
+    
+    private static final String INSERT_DOCUMENT =
+        "INSERT INTO knowledge_documents (document_id, title, content, source, tags, embedding_hash, " +
+        "indexed_in_search, created_timestamp, updated_timestamp) " +
+        "VALUES (:documentId, :title, :content, :source, :tags, :embeddingHash, :indexedInSearch, :now, :now)";
+    
+    // Un document réimporté est remplacé et sera réindexé
+    private static final String UPDATE_DOCUMENT =
+        "UPDATE knowledge_documents SET title = :title, content = :content, source = :source, tags = :tags, " +
+        "embedding_hash = :embeddingHash, indexed_in_search = :indexedInSearch, updated_timestamp = :now " +
+        "WHERE document_id = :documentId";
+    
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final int MAX_RETAINED_JOBS = 50;
+    
+    private final KnowledgeDocumentRepository knowledgeDocumentRepository;
+    private final KnowledgeIndexingService knowledgeIndexingService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final StatisticsService statisticsService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int parallelism;
+    private final int maxDocumentChars;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService importer = Executors.newVirtualThreadPerTaskExecutor();
+    
+    public KnowledgeImportService(KnowledgeDocumentRepository knowledgeDocumentRepository,
+                                  KnowledgeIndexingService knowledgeIndexingService,
+                                  SemanticAnswerCache semanticAnswerCache,
+                                  StatisticsService statisticsService,
+                                  NamedParameterJdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  ObjectMapper objectMapper,
+                                  @Value("${chatbot.import.batch-size:500}") int batchSize,
+                                  @Value("${chatbot.import.parallelism:2}") int parallelism,
+                                  @Value("${chatbot.import.max-document-chars:1000000}") int maxDocumentChars) {
+        this.knowledgeDocumentRepository = knowledgeDocumentRepository;
+        this.knowledgeIndexingService = knowledgeIndexingService;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.statisticsService = statisticsService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        // La clause IN de la recherche des documents existants est limitée à 2100 paramètres sur SQL Server
+        this.batchSize = Math.max(1, Math.min(batchSize, 2000));
+        this.parallelism = Math.max(1, parallelism);
+        this.maxDocumentChars = maxDocumentChars;
+    }
+    
+    /**
+     * Recopie l'envoi sur disque puis lance l'import en tâche de fond
+     *
+     * @throws IllegalArgumentException si le format ne peut être déduit du nom de fichier
+     */
+    public ImportStatus start(MultipartFile file, String source, String tags) throws IOException {
+        Format format = Format.of(file.getOriginalFilename())
+            .orElseThrow(() -> new IllegalArgumentException(
+                "Format non supporté (attendu: .jsonl, .ndjson ou .zip): " + file.getOriginalFilename()));
+        
+        // Le fichier de la requête multipart est supprimé à la fin de la requête : l'import lit sa propre copie
+        Path spooled = Files.createTempFile("knowledge-import-", format.extension);
+        file.transferTo(spooled);
+        
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.getOriginalFilename(), format);
+        evictFinishedJobs();
+        jobs.put(job.id, job);
+        
+        importer.execute(() -> run(job, spooled, source, tags));
+        
+        log.info("Import {} lancé pour {} ({} octets)", job.id, file.getOriginalFilename(), file.getSize());
+        return job.snapshot();
+    }
+    
+    public Optional<ImportStatus> status(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(ImportJob::snapshot);
+    }
+    
+    public List<ImportStatus> statuses() {
+        return jobs.values().stream()
+            .map(ImportJob::snapshot)
+            .sorted((a, b) -> b.startedAt().compareTo(a.startedAt()))
+            .toList();
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        importer.shutdownNow();
+    }
+    
+    private void run(ImportJob job, Path spooled, String source, String tags) {
+        job.state.set(State.RUNNING);
+        
+        // Borne le nombre de lots écrits en attente d'indexation : la lecture attend l'indexation
+        Semaphore inFlight = new Semaphore(parallelism);
+        
+        try (ExecutorService indexer = Executors.newFixedThreadPool(
+                 parallelism, Thread.ofVirtual().name("knowledge-import-", 0).factory())) {
+            
+            List<ImportedDocument> batch = new ArrayList<>(batchSize);
+            Iterator<ImportedDocument> documents = job.format == Format.ZIP
+                ? new ZipDocuments(spooled, job)
+                : new JsonlDocuments(spooled, job);
+            
+            try {
+                while (documents.hasNext()) {
+                    batch.add(documents.next());
+                    if (batch.size() >= batchSize) {
+                        submit(job, write(job, batch, source, tags), indexer, inFlight);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    submit(job, write(job, batch, source, tags), indexer, inFlight);
+                }
+            } finally {
+                if (documents instanceof AutoCloseable closeable) {
+                    closeable.close();
+                }
+            }
+        
+        } catch (Exception e) {
+            job.error("Import interrompu: " + e.getMessage());
+            job.state.set(State.FAILED);
+            log.error("Erreur lors de l'import {}: {}", job.id, e.getMessage(), e);
+        
+        } finally {
+            deleteQuietly(spooled);
+            job.finishedAt.set(Instant.now());
+        }
+        
+        if (job.indexed.get() > 0) {
+            semanticAnswerCache.invalidateAll();
+        }
+        
+        job.state.compareAndSet(State.RUNNING, State.COMPLETED);
+        log.info("Import {} terminé ({}): {} lus, {} ajoutés, {} remplacés, {} indexés, {} rejetés, {} non indexés",
+                 job.id, job.state.get(), job.parsed.get(), job.inserted.get(), job.updated.get(),
+                 job.indexed.get(), job.rejected.get(), job.indexingFailed.get());
+    }
+    
+    /**
+     * Écrit un lot dans sa propre transaction : insertion des nouveaux documents, remplacement des
+     * documents déjà présents, chacun par un lot JDBC
+     */
+    private List<String> write(ImportJob job, List<ImportedDocument> batch, String source, String tags) {
+        // Un même documentId répété dans le lot : la dernière occurrence l'emporte
+        Map<String, ImportedDocument> byId = new LinkedHashMap<>();
+        for (ImportedDocument document : batch) {
+            byId.put(document.documentId(), document);
+        }
+        
+        int inserted = transactionTemplate.execute(status -> {
+            Set<String> existing = knowledgeDocumentRepository.findExistingDocumentIds(byId.keySet());
+            LocalDateTime now = LocalDateTime.now();
+            
+            List<SqlParameterSource> inserts = new ArrayList<>();
+            List<SqlParameterSource> updates = new ArrayList<>();
+            byId.values().forEach(document -> (existing.contains(document.documentId()) ? updates : inserts)
+                .add(parameters(document, source, tags, now)));
+            
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_DOCUMENT, inserts.toArray(SqlParameterSource[]::new));
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_DOCUMENT, updates.toArray(SqlParameterSource[]::new));
+            }
+            return inserts.size();
+        });
+        
+        job.inserted.addAndGet(inserted);
+        job.updated.addAndGet(byId.size() - inserted);
+        statisticsService.onDocumentsAdded(inserted);
+        
+        return new ArrayList<>(byId.keySet());
+    }
+    
+    private void submit(ImportJob job, List<String> documentIds, ExecutorService indexer, Semaphore inFlight)
+            throws InterruptedException {
+        inFlight.acquire();
+        indexer.execute(() -> {
+            try {
+                knowledgeIndexingService.syncDocuments(documentIds);
+                job.indexed.addAndGet(documentIds.size());
+            
+            } catch (Exception e) {
+                // Les documents restent non indexés : la synchronisation horaire les reprendra
+                job.indexingFailed.addAndGet(documentIds.size());
+                job.error("Indexation d'un lot de " + documentIds.size() + " documents en échec: " + e.getMessage());
+                log.error("Erreur lors de l'indexation d'un lot de l'import {}: {}", job.id, e.getMessage(), e);
+            
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+    
+    private static MapSqlParameterSource parameters(ImportedDocument document, String source, String tags,
+                                                    LocalDateTime now) {
+        return new MapSqlParameterSource()
+            .addValue("documentId", document.documentId())
+            .addValue("title", document.title())
+            .addValue("content", document.content(), Types.VARCHAR)
+            .addValue("source", document.source() != null ? document.source() : source)
+            .addValue("tags", document.tags() != null ? document.tags() : tags)
+            .addValue("embeddingHash", ContentHash.sha256(document.content()))
+            .addValue("indexedInSearch", false)
+            .addValue("now", now);
+    }
+    
+    /**
+     * Valide un document lu ; un document invalide est compté comme rejeté, sans interrompre l'import
+     */
+    private ImportedDocument accept(ImportJob job, String location, ImportedDocument document) {
+        if (document.content() == null || document.content().isBlank()) {
+            job.reject(location + ": contenu vide");
+            return null;
+        }
+        if (document.content().length() > maxDocumentChars) {
+            job.reject(location + ": contenu de plus de " + maxDocumentChars + " caractères");
+            return null;
+        }
+        
+        String documentId = document.documentId() != null && !document.documentId().isBlank()
+            ? document.documentId()
+            : UUID.randomUUID().toString();
+        String title = document.title() != null && !document.title().isBlank() ? document.title() : location;
+        
+        job.parsed.incrementAndGet();
+        return new ImportedDocument(documentId, title, document.content(), document.source(), document.tags());
+    }
+    
+    private void evictFinishedJobs() {
+        if (jobs.size() < MAX_RETAINED_JOBS) {
+            return;
+        }
+        jobs.values().stream()
+            .filter(job -> job.finishedAt.get() != null)
+            .sorted((a, b) -> a.finishedAt.get().compareTo(b.finishedAt.get()))
+            .limit(jobs.size() - MAX_RETAINED_JOBS + 1L)
+            .forEach(job -> jobs.remove(job.id));
+    }
+    
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Impossible de supprimer le fichier temporaire {}: {}", path, e.getMessage());
+        }
+    }
+    
+    /**
+     * Lecture ligne à ligne d'un fichier JSONL ; les lignes vides sont ignorées
+     */
+    private final class JsonlDocuments implements Iterator<ImportedDocument>, AutoCloseable {
+        
+        private final BufferedReader reader;
+        private final ImportJob job;
+        private ImportedDocument next;
+        private long lineNumber;
+        
+        JsonlDocuments(Path file, ImportJob job) throws IOException {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            this.job = job;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            try {
+                String line;
+                while (next == null && (line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        next = accept(job, "ligne " + lineNumber, objectMapper.readValue(line, ImportedDocument.class));
+                    } catch (JsonProcessingException e) {
+                        job.reject("ligne " + lineNumber + ": JSON invalide (" + e.getOriginalMessage() + ")");
+                    }
+                }
+                return next != null;
+            } catch (IOException e) {
+                throw new IllegalStateException("Lecture du fichier importé impossible", e);
+            }
+        }
+        
+        @Override
+        public ImportedDocument next() {
+            ImportedDocument document = next;
+            next = null;
+            return document;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+    
+    /**
+     * Lecture séquentielle d'une archive zip : chaque fichier markdown devient un document, identifié par
+     * son chemin dans l'archive (un nouvel import de la même archive remplace les documents au lieu de les
+     * dupliquer) et titré par son premier titre de niveau 1
+     */
+    private final class ZipDocuments implements Iterator<ImportedDocument>, AutoCloseable {
+        
+        private final ZipInputStream zip;
+        private final ImportJob job;
+        private ImportedDocument next;
+        
+        ZipDocuments(Path file, ImportJob job) throws IOException {
+            this.zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8);
+            this.job = job;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            try {
+                ZipEntry entry;
+                while (next == null && (entry = zip.getNextEntry()) != null) {
+                    String name = entry.getName();
+                    String lowerName = name.toLowerCase(Locale.ROOT);
+                    if (entry.isDirectory() || !(lowerName.endsWith(".md") || lowerName.endsWith(".markdown"))) {
+                        continue;
+                    }
+                    
+                    String content = readBounded(zip);
+                    if (content == null) {
+                        job.reject(name + ": contenu de plus de " + maxDocumentChars + " caractères");
+                        continue;
+                    }
+                    next = accept(job, name, new ImportedDocument(
+                        "import_" + ContentHash.sha256(job.fileName + "/" + name), title(name, content), content, null, null));
+                }
+                return next != null;
+            } catch (IOException e) {
+                throw new IllegalStateException("Lecture de l'archive importée impossible", e);
+            }
+        }
+        
+        @Override
+        public ImportedDocument next() {
+            ImportedDocument document = next;
+            next = null;
+            return document;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+        
+        /**
+         * Lit l'entrée courante, ou retourne null au-delà de la taille maximale (protection contre les
+         * archives dont un fichier se décompresse démesurément)
+         */
+        private String readBounded(InputStream entry) throws IOException {
+            StringBuilder content = new StringBuilder();
+            char[] buffer = new char[8192];
+            InputStreamReader reader = new InputStreamReader(entry, StandardCharsets.UTF_8);
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+                if (content.length() > maxDocumentChars) {
+                    return null;
+                }
+            }
+            return content.toString();
+        }
+        
+        private static String title(String name, String content) {
+            for (String line : content.lines().limit(50).toList()) {
+                if (line.startsWith("# ")) {
+                    return line.substring(2).strip();
+                }
+            }
+            String fileName = name.substring(name.lastIndexOf('/') + 1);
+            return fileName.substring(0, fileName.lastIndexOf('.'));
+        }
+    }
+    
+    /**
+     * Document tel que lu dans l'envoi ; source et tags sont facultatifs (valeurs de la requête par défaut)
+     */
+    public record ImportedDocument(String documentId, String title, String content, String source, String tags) {
+    }
+    
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+    
+    enum Format {
+        JSONL(".jsonl"), ZIP(".zip");
+        
+        private final String extension;
+        
+        Format(String extension) {
+            this.extension = extension;
+        }
+        
+        static Optional<Format> of(String fileName) {
+            String lowerName = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+            if (lowerName.endsWith(".jsonl") || lowerName.endsWith(".ndjson")) {
+                return Optional.of(JSONL);
+            }
+            if (lowerName.endsWith(".zip")) {
+                return Optional.of(ZIP);
+            }
+            return Optional.empty();
+        }
+    }
+    
+    private static final class ImportJob {
+        
+        private final String id;
+        private final String fileName;
+        private final Format format;
+        private final Instant startedAt = Instant.now();
+        private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+        private final AtomicReference<Instant> finishedAt = new AtomicReference<>();
+        private final AtomicLong parsed = new AtomicLong();
+        private final AtomicLong inserted = new AtomicLong();
+        private final AtomicLong updated = new AtomicLong();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong indexingFailed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        
+        ImportJob(String id, String fileName, Format format) {
+            this.id = id;
+            this.fileName = fileName;
+            this.format = format;
+        }
+        
+        void reject(String reason) {
+            rejected.incrementAndGet();
+            error(reason);
+        }
+        
+        void error(String message) {
+            // Seules les premières erreurs sont conservées : un fichier entièrement invalide ne doit pas
+            // remplir la mémoire
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(message);
+            }
+        }
+        
+        ImportStatus snapshot() {
+            return new ImportStatus(id, fileName, state.get(), startedAt, finishedAt.get(), parsed.get(),
+                                    inserted.get(), updated.get(), indexed.get(), indexingFailed.get(),
+                                    rejected.get(), List.copyOf(errors));
+        }
+    }
+    
+    public record ImportStatus(String jobId, String fileName, State state, Instant startedAt, Instant finishedAt,
+                               long parsed, long inserted, long updated, long indexed, long indexingFailed,
+                               long rejected, List<String> errors) {
+    }
+}
\ No newline at end of file
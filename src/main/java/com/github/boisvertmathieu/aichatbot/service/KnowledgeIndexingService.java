@@ -1,129 +1,369 @@
 package com.github.boisvertmathieu.aichatbot.service;
 
 import com.github.boisvertmathieu.aichatbot.entity.Conversation;
+import com.github.boisvertmathieu.aichatbot.entity.IndexingWatermark;
 import com.github.boisvertmathieu.aichatbot.entity.KnowledgeDocument;
 import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
+import com.github.boisvertmathieu.aichatbot.repository.IndexingWatermarkRepository;
 import com.github.boisvertmathieu.aichatbot.repository.KnowledgeDocumentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.ai.azure.openai.AzureOpenAiEmbeddingModel;
-import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingResponse;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KnowledgeIndexingService {
     
+    private static final String CORRECTED_RESPONSES_WATERMARK = "indexCorrectedResponses";
+    private static final String CORRECTED_RESPONSES_SOURCE = "feedback_correction";
+    private static final LocalDateTime INITIAL_WATERMARK = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
     private final ConversationRepository conversationRepository;
     private final KnowledgeDocumentRepository knowledgeDocumentRepository;
+    private final IndexingWatermarkRepository indexingWatermarkRepository;
     private final AzureOpenAiEmbeddingModel embeddingModel;
-    private final VectorStore vectorStore;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final KnowledgeChunkService knowledgeChunkService;
+    private final StatisticsService statisticsService;
+    private final TransactionTemplate transactionTemplate;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    
+    @Value("${chatbot.indexing.chunk-size:100}")
+    private int syncChunkSize;
+    
+    @Value("${chatbot.indexing.parallelism:4}")
+    private int syncParallelism;
+    
+    @Value("${chatbot.indexing.corrections-page-size:200}")
+    private int correctionsPageSize;
+    
+    @Value("${chatbot.indexing.corrections-overlap:PT10M}")
+    private Duration correctionsOverlap;
+    
+    @Value("${chatbot.indexing.near-duplicate.enabled:true}")
+    private boolean nearDuplicateEnabled;
     
     /**
      * Tâche planifiée pour indexer les nouvelles réponses corrigées dans la base de connaissances
-     * S'exécute tous les jours à 2h du matin
+     * S'exécute tous les jours à 2h du matin. Seul le feedback postérieur au dernier point de reprise
+     * persisté est lu, par pages, de sorte que le coût dépend du nouveau feedback et non de l'historique.
+     * {@code feedback_timestamp} étant fixé avant le commit, la lecture reprend {@code corrections-overlap}
+     * avant le point de reprise : les corrections relues sont écartées, par leur document {@code corrected_*}
+     * ou par la marque de fusion posée sur la conversation.
      */
     @Scheduled(cron = "0 0 2 * * *")
     @SchedulerLock(name = "indexCorrectedResponses", 
                    lockAtMostFor = "PT30M", 
                    lockAtLeastFor = "PT1M")
-    @Transactional
     public void indexCorrectedResponses() {
         log.info("Début de l'indexation des réponses corrigées");
         
         try {
-            // Récupération des conversations avec des réponses corrigées
-            List<Conversation> conversationsWithCorrections = conversationRepository.findConversationsWithCorrectFeedback();
+            LocalDateTime watermark = indexingWatermarkRepository.findById(CORRECTED_RESPONSES_WATERMARK)
+                .map(IndexingWatermark::getWatermark)
+                .orElse(INITIAL_WATERMARK);
+            LocalDateTime since = watermark.minus(correctionsOverlap);
             
             int indexedCount = 0;
+            int mergedCount = 0;
+            int pageNumber = 0;
+            
+            // Signatures des réponses corrigées déjà indexées, chargées à la première correction à traiter
+            NearDuplicateDetector.Index correctedIndex = null;
+            
+            // Le point de reprise n'avance que sur des groupes d'horodatage entièrement traités,
+            // et plus du tout après un échec, pour que la conversation en erreur soit relue au prochain passage
+            LocalDateTime currentTimestamp = null;
+            LocalDateTime completedWatermark = watermark;
+            boolean failed = false;
             
-            for (Conversation conversation : conversationsWithCorrections) {
-                try {
-                    // Vérifier si cette réponse corrigée n'est pas déjà indexée
-                    String documentId = "corrected_" + conversation.getConversationId();
+            Slice<Conversation> page;
+            do {
+                page = conversationRepository.findConversationsWithCorrectFeedbackSince(
+                    since, PageRequest.of(pageNumber++, correctionsPageSize));
+                
+                List<Conversation> conversations = page.getContent();
+                if (conversations.isEmpty()) {
+                    break;
+                }
+                
+                // Vérification ensembliste des réponses corrigées déjà indexées
+                Set<String> alreadyIndexed = knowledgeDocumentRepository.findExistingDocumentIds(
+                    conversations.stream().map(KnowledgeIndexingService::correctedDocumentId).toList());
+                
+                for (Conversation conversation : conversations) {
+                    if (!failed && currentTimestamp != null
+                            && conversation.getFeedbackTimestamp().isAfter(currentTimestamp)
+                            && currentTimestamp.isAfter(completedWatermark)) {
+                        completedWatermark = currentTimestamp;
+                    }
+                    currentTimestamp = conversation.getFeedbackTimestamp();
                     
-                    if (knowledgeDocumentRepository.findByDocumentId(documentId).isEmpty()) {
-                        indexCorrectedResponse(conversation);
-                        indexedCount++;
+                    try {
+                        // Filtré ici plutôt que dans la requête : la marque posée en cours de lecture décalerait les pages
+                        if (conversation.getCorrectionMergedInto() == null
+                                && !alreadyIndexed.contains(correctedDocumentId(conversation))) {
+                            String content = correctedContent(conversation);
+                            int[] signature = nearDuplicateDetector.signature(content);
+                            
+                            if (correctedIndex == null) {
+                                correctedIndex = loadCorrectedSignatures();
+                            }
+                            
+                            Optional<NearDuplicateDetector.Match> duplicate = nearDuplicateEnabled
+                                ? correctedIndex.findDuplicate(signature)
+                                : Optional.empty();
+                            
+                            if (duplicate.isPresent()) {
+                                // Question récurrente : le document existant est mis à jour au lieu d'en ajouter un
+                                refreshCorrectedResponse(duplicate.get().documentId(), content, signature);
+                                transactionTemplate.executeWithoutResult(status -> conversationRepository
+                                    .markCorrectionMerged(conversation.getId(), duplicate.get().documentId()));
+                                correctedIndex.put(duplicate.get().documentId(), signature);
+                                mergedCount++;
+                                
+                                log.debug("Réponse corrigée de conversationId {} fusionnée dans {} (similarité {})",
+                                         conversation.getConversationId(), duplicate.get().documentId(),
+                                         duplicate.get().similarity());
+                            
+                            } else {
+                                indexCorrectedResponse(conversation, content, signature);
+                                correctedIndex.put(correctedDocumentId(conversation), signature);
+                                indexedCount++;
+                                
+                                log.debug("Réponse corrigée indexée pour conversationId: {}", 
+                                         conversation.getConversationId());
+                            }
+                        }
                         
-                        log.debug("Réponse corrigée indexée pour conversationId: {}", 
-                                 conversation.getConversationId());
+                    } catch (Exception e) {
+                        failed = true;
+                        log.error("Erreur lors de l'indexation de la conversation {}: {}", 
+                                 conversation.getConversationId(), e.getMessage(), e);
                     }
-                    
-                } catch (Exception e) {
-                    log.error("Erreur lors de l'indexation de la conversation {}: {}", 
-                             conversation.getConversationId(), e.getMessage(), e);
                 }
+                
+                saveWatermark(completedWatermark);
+                
+            } while (page.hasNext());
+            
+            // Les corrections relues dans la marge ne font jamais reculer le point de reprise
+            if (!failed && currentTimestamp != null && currentTimestamp.isAfter(completedWatermark)) {
+                saveWatermark(currentTimestamp);
+            }
+            
+            if (indexedCount + mergedCount > 0) {
+                semanticAnswerCache.invalidateAll();
             }
             
-            log.info("Indexation terminée. {} nouvelles réponses corrigées indexées", indexedCount);
+            log.info("Indexation terminée. {} nouvelles réponses corrigées indexées, {} fusionnées dans un document existant",
+                     indexedCount, mergedCount);
             
         } catch (Exception e) {
             log.error("Erreur lors de l'indexation des réponses corrigées: {}", e.getMessage(), e);
         }
     }
     
+    private void saveWatermark(LocalDateTime watermark) {
+        indexingWatermarkRepository.save(IndexingWatermark.builder()
+            .name(CORRECTED_RESPONSES_WATERMARK)
+            .watermark(watermark)
+            .build());
+    }
+    
     /**
      * Tâche planifiée pour synchroniser les documents non indexés avec Azure AI Search
-     * S'exécute toutes les heures
+     * S'exécute toutes les heures. Les documents sont traités par lots, en parallèle borné,
+     * avec un commit par lot : une exécution interrompue reprend là où elle s'était arrêtée.
      */
     @Scheduled(fixedRate = 3600000) // 1 heure
     @SchedulerLock(name = "syncDocumentsToSearch", 
                    lockAtMostFor = "PT15M", 
                    lockAtLeastFor = "PT1M")
-    @Transactional
     public void syncDocumentsToSearch() {
         log.debug("Début de la synchronisation des documents vers Azure AI Search");
         
         try {
-            List<KnowledgeDocument> documentsToSync = knowledgeDocumentRepository.findDocumentsNeedingIndexing();
+            List<Long> idsToSync = knowledgeDocumentRepository.findIdsNeedingIndexing();
             
-            int syncedCount = 0;
+            if (idsToSync.isEmpty()) {
+                return;
+            }
             
-            for (KnowledgeDocument document : documentsToSync) {
-                try {
-                    syncDocumentToVectorStore(document);
-                    
-                    document.setIndexedInSearch(true);
-                    document.setUpdatedTimestamp(LocalDateTime.now());
-                    knowledgeDocumentRepository.save(document);
-                    
-                    syncedCount++;
+            int totalCount = idsToSync.size();
+            AtomicInteger syncedCount = new AtomicInteger();
+            AtomicInteger failedCount = new AtomicInteger();
+            
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            
+            try (ExecutorService executor = Executors.newFixedThreadPool(
+                    syncParallelism, Thread.ofVirtual().name("knowledge-sync-", 0).factory())) {
+                
+                for (int start = 0; start < totalCount; start += syncChunkSize) {
+                    List<Long> chunkIds = idsToSync.subList(start, Math.min(start + syncChunkSize, totalCount));
                     
-                } catch (Exception e) {
-                    log.error("Erreur lors de la synchronisation du document {}: {}", 
-                             document.getDocumentId(), e.getMessage(), e);
+                    chunks.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            syncChunk(chunkIds);
+                            int done = syncedCount.addAndGet(chunkIds.size());
+                            log.info("Progression de la synchronisation: {}/{} documents", done, totalCount);
+                            
+                        } catch (Exception e) {
+                            failedCount.addAndGet(chunkIds.size());
+                            log.error("Erreur lors de la synchronisation d'un lot de {} documents (ids {} à {}): {}", 
+                                     chunkIds.size(), chunkIds.get(0), chunkIds.get(chunkIds.size() - 1), 
+                                     e.getMessage(), e);
+                        }
+                    }, executor));
                 }
+                
+                CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
             }
             
-            if (syncedCount > 0) {
-                log.info("Synchronisation terminée. {} documents synchronisés avec Azure AI Search", syncedCount);
+            if (syncedCount.get() > 0) {
+                semanticAnswerCache.invalidateAll();
             }
             
+            log.info("Synchronisation terminée. {} documents synchronisés avec Azure AI Search, {} en échec", 
+                     syncedCount.get(), failedCount.get());
+            
         } catch (Exception e) {
             log.error("Erreur lors de la synchronisation des documents: {}", e.getMessage(), e);
         }
     }
     
-    private void indexCorrectedResponse(Conversation conversation) throws Exception {
+    /**
+     * Indexe sans attendre la tâche horaire des documents désignés par leur documentId (import en masse),
+     * par lots de {@code chunk-size}. Le cache sémantique n'est pas invalidé : l'appelant le fait une fois
+     * l'ensemble indexé. Un lot en échec reste non indexé et sera repris par la synchronisation horaire.
+     */
+    public void syncDocuments(Collection<String> documentIds) {
+        List<Long> ids = knowledgeDocumentRepository.findIdsByDocumentIds(documentIds);
+        for (int start = 0; start < ids.size(); start += syncChunkSize) {
+            syncChunk(ids.subList(start, Math.min(start + syncChunkSize, ids.size())));
+        }
+    }
+    
+    /**
+     * Synchronise un lot de documents en un seul appel d'embedding et d'upsert, puis le marque indexé.
+     * Aucune transaction ni connexion n'est retenue pendant l'aller-retour distant : lecture et découpage
+     * d'abord, appel au vector store ensuite, puis marquage dans une transaction courte.
+     */
+    private void syncChunk(List<Long> documentIds) {
+        List<KnowledgeDocument> documents = knowledgeDocumentRepository.findAllById(documentIds);
+        
+        Map<Long, LocalDateTime> loadedVersions = new HashMap<>();
+        for (KnowledgeDocument document : documents) {
+            loadedVersions.put(document.getId(), document.getUpdatedTimestamp());
+            if (document.getEmbeddingHash() == null) {
+                document.setEmbeddingHash(generateEmbeddingHash(document.getContent()));
+            }
+        }
+        
+        knowledgeChunkService.index(documents);
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            long newlyIndexed = 0;
+            
+            for (KnowledgeDocument current : knowledgeDocumentRepository.findAllById(loadedVersions.keySet())) {
+                // Document modifié pendant l'indexation : il reste à indexer pour le prochain passage
+                if (!Objects.equals(current.getUpdatedTimestamp(), loadedVersions.get(current.getId()))) {
+                    continue;
+                }
+                
+                if (!Boolean.TRUE.equals(current.getIndexedInSearch())) {
+                    newlyIndexed++;
+                }
+                if (current.getEmbeddingHash() == null) {
+                    current.setEmbeddingHash(generateEmbeddingHash(current.getContent()));
+                }
+                current.setIndexedInSearch(true);
+                current.setUpdatedTimestamp(now);
+            }
+            
+            statisticsService.onDocumentsIndexed(newlyIndexed);
+        });
+    }
+    
+    /**
+     * Index LSH des réponses corrigées déjà présentes. Les documents antérieurs à la détection des
+     * quasi-doublons reçoivent leur signature au premier passage.
+     */
+    private NearDuplicateDetector.Index loadCorrectedSignatures() {
+        List<KnowledgeDocument> unsigned =
+            knowledgeDocumentRepository.findBySourceAndMinhashSignatureIsNull(CORRECTED_RESPONSES_SOURCE);
+        if (!unsigned.isEmpty()) {
+            unsigned.forEach(document -> document.setMinhashSignature(
+                NearDuplicateDetector.encode(nearDuplicateDetector.signature(document.getContent()))));
+            knowledgeDocumentRepository.saveAll(unsigned);
+            log.info("Signatures MinHash calculées pour {} réponses corrigées existantes", unsigned.size());
+        }
+        
+        NearDuplicateDetector.Index index = nearDuplicateDetector.newIndex();
+        for (KnowledgeDocumentRepository.DocumentSignature stored
+                : knowledgeDocumentRepository.findSignaturesBySource(CORRECTED_RESPONSES_SOURCE)) {
+            int[] signature = NearDuplicateDetector.decode(stored.getMinhashSignature());
+            if (signature != null) {
+                index.put(stored.getDocumentId(), signature);
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * La correction la plus récente remplace le contenu du quasi-doublon existant ; seuls ses passages
+     * modifiés sont réembarqués
+     */
+    private void refreshCorrectedResponse(String documentId, String content, int[] signature) throws Exception {
+        KnowledgeDocument document = knowledgeDocumentRepository.findByDocumentId(documentId)
+            .orElseThrow(() -> new IllegalStateException("Réponse corrigée introuvable: " + documentId));
+        
+        if (content.equals(document.getContent())) {
+            return;
+        }
+        
+        document.setContent(content);
+        document.setEmbeddingHash(generateEmbeddingHash(content));
+        document.setMinhashSignature(NearDuplicateDetector.encode(signature));
+        document.setIndexedInSearch(false);
+        knowledgeDocumentRepository.save(document);
+        
+        syncDocumentToVectorStore(document);
+        
+        document.setIndexedInSearch(true);
+        knowledgeDocumentRepository.save(document);
+    }
+    
+    private void indexCorrectedResponse(Conversation conversation, String content, int[] signature) throws Exception {
         // Créer un nouveau document de connaissance
-        String documentId = "corrected_" + conversation.getConversationId();
-        String content = String.format("Question: %s\nRéponse: %s", 
-                                      conversation.getQuestion(), 
-                                      conversation.getCorrectedResponse());
+        String documentId = correctedDocumentId(conversation);
         
         String embeddingHash = generateEmbeddingHash(content);
         
@@ -131,56 +371,53 @@ public class KnowledgeIndexingService {
             .documentId(documentId)
             .title("Réponse corrigée - " + conversation.getConversationId())
             .content(content)
-            .source("feedback_correction")
+            .source(CORRECTED_RESPONSES_SOURCE)
             .tags("qa,correction,feedback")
             .embeddingHash(embeddingHash)
+            .minhashSignature(NearDuplicateDetector.encode(signature))
             .indexedInSearch(false)
             .createdTimestamp(LocalDateTime.now())
             .updatedTimestamp(LocalDateTime.now())
             .build();
             
         knowledgeDocumentRepository.save(document);
+        statisticsService.onDocumentsAdded(1);
         
         // Synchroniser immédiatement avec le vector store
         syncDocumentToVectorStore(document);
         
         document.setIndexedInSearch(true);
         knowledgeDocumentRepository.save(document);
+        statisticsService.onDocumentsIndexed(1);
     }
     
     private void syncDocumentToVectorStore(KnowledgeDocument document) throws Exception {
-        // Créer le document Spring AI
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("id", document.getDocumentId());
-        metadata.put("title", document.getTitle());
-        metadata.put("source", document.getSource());
-        metadata.put("tags", document.getTags());
-        metadata.put("created", document.getCreatedTimestamp().toString());
-        
-        Document springAiDocument = new Document(document.getContent(), metadata);
-        
-        // Ajouter au vector store (avec génération automatique d'embeddings)
-        vectorStore.add(List.of(springAiDocument));
+        // Ajouter au vector store passage par passage : l'embedding est réutilisé depuis le stockage
+        // adressé par contenu s'il existe déjà
+        knowledgeChunkService.index(List.of(document));
         
         log.debug("Document {} synchronisé avec Azure AI Search", document.getDocumentId());
     }
     
+    private static String correctedContent(Conversation conversation) {
+        return String.format("Question: %s\nRéponse: %s", 
+                             conversation.getQuestion(), 
+                             conversation.getCorrectedResponse());
+    }
+    
+    /**
+     * Un document par tour corrigé ; le premier tour garde l'identifiant historique, sans suffixe
+     */
+    private static String correctedDocumentId(Conversation conversation) {
+        Integer turnIndex = conversation.getTurnIndex();
+        return turnIndex == null || turnIndex == 0
+            ? "corrected_" + conversation.getConversationId()
+            : "corrected_" + conversation.getConversationId() + "_" + turnIndex;
+    }
+    
     private String generateEmbeddingHash(String content) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(content.getBytes("UTF-8"));
-            
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            
-            return hexString.toString();
-            
+            return ContentHash.sha256(content);
         } catch (Exception e) {
             log.warn("Erreur lors de la génération du hash d'embedding: {}", e.getMessage());
             return UUID.randomUUID().toString();
@@ -216,6 +453,11 @@ public class KnowledgeIndexingService {
             document.setIndexedInSearch(true);
             knowledgeDocumentRepository.save(document);
             
+            statisticsService.onDocumentsAdded(1);
+            statisticsService.onDocumentsIndexed(1);
+            
+            semanticAnswerCache.invalidateAll();
+            
             log.info("Document de connaissance ajouté et indexé: {}", title);
             
         } catch (Exception e) {
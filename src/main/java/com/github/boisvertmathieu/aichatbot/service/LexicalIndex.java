@@ -0,0 +1,304 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Index inversé en mémoire (BM25) sur le titre et le contenu des passages de la base de connaissances.
+ * Complète la recherche vectorielle sur les correspondances exactes : codes d'erreur, noms de classes,
+ * clés de propriétés.
+ */
+@Component
+public class LexicalIndex {
+    
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    
+    // Les termes composés (spring.datasource.url, HTTP-404, max_tokens) sont indexés entiers et par parties
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+(?:[._:\\-/][\\p{L}\\p{N}]+)*");
+    private static final Pattern TOKEN_PART = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final Map<String, IndexedPassage> passages = new HashMap<>();
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    private long totalLength;
+    
+    // Passages modifiés pendant un rechargement en cours, null hors rechargement
+    private Set<String> touchedDuringReload;
+    
+    /**
+     * Ajoute ou remplace des passages, identifiés par l'id de leur document Spring AI
+     */
+    public void upsert(Collection<Document> documents) {
+        List<IndexedPassage> analyzed = documents.stream().map(LexicalIndex::analyze).toList();
+        
+        lock.writeLock().lock();
+        try {
+            for (IndexedPassage passage : analyzed) {
+                String id = passage.document().getId();
+                removeLocked(id);
+                addLocked(passage);
+                touchLocked(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                removeLocked(id);
+                touchLocked(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Applique des modifications relues en base. Les passages ajoutés ou retirés par {@link #upsert}
+     * ou {@link #remove} pendant la lecture sont plus récents que celle-ci : ils ne sont pas écrasés.
+     */
+    public synchronized void reload(Supplier<Changes> loader) {
+        lock.writeLock().lock();
+        try {
+            touchedDuringReload = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        try {
+            Changes changes = loader.get();
+            List<IndexedPassage> analyzed = changes.upserts().stream().map(LexicalIndex::analyze).toList();
+            
+            lock.writeLock().lock();
+            try {
+                for (String id : changes.removals()) {
+                    if (!touchedDuringReload.contains(id)) {
+                        removeLocked(id);
+                    }
+                }
+                for (IndexedPassage passage : analyzed) {
+                    String id = passage.document().getId();
+                    if (!touchedDuringReload.contains(id)) {
+                        removeLocked(id);
+                        addLocked(passage);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        
+        } finally {
+            lock.writeLock().lock();
+            try {
+                touchedDuringReload = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+    
+    /**
+     * Identifiants des documents parents (métadonnée {@code id}) des passages indexés
+     */
+    public Set<String> parentDocumentIds() {
+        lock.readLock().lock();
+        try {
+            return passages.values().stream()
+                .map(passage -> String.valueOf(passage.document().getMetadata().get("id")))
+                .collect(Collectors.toSet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Identifiants des passages indexés pour les documents parents donnés
+     */
+    public List<String> chunkIdsOf(Collection<String> parentDocumentIds) {
+        Set<String> parents = parentDocumentIds instanceof Set<String> set ? set : new HashSet<>(parentDocumentIds);
+        lock.readLock().lock();
+        try {
+            return passages.values().stream()
+                .map(IndexedPassage::document)
+                .filter(document -> parents.contains(String.valueOf(document.getMetadata().get("id"))))
+                .map(Document::getId)
+                .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Les {@code topK} passages les mieux classés par BM25, du plus au moins pertinent
+     */
+    public List<Document> search(String query, int topK) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty() || topK <= 0) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        try {
+            if (passages.isEmpty()) {
+                return List.of();
+            }
+            
+            int passageCount = passages.size();
+            double averageLength = (double) totalLength / passageCount;
+            Map<String, Double> scores = new HashMap<>();
+            
+            for (String term : queryTerms) {
+                Map<String, Integer> termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                
+                double idf = Math.log(1 + (passageCount - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                
+                for (Map.Entry<String, Integer> posting : termPostings.entrySet()) {
+                    int frequency = posting.getValue();
+                    int length = passages.get(posting.getKey()).length();
+                    double termScore = idf * frequency * (K1 + 1)
+                        / (frequency + K1 * (1 - B + B * length / averageLength));
+                    scores.merge(posting.getKey(), termScore, Double::sum);
+                }
+            }
+            
+            PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                best.offer(entry);
+                if (best.size() > topK) {
+                    best.poll();
+                }
+            }
+            
+            List<Document> results = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                Map.Entry<String, Double> entry = best.poll();
+                Document document = passages.get(entry.getKey()).document();
+                results.add(Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(document.getMetadata())
+                    .score(entry.getValue())
+                    .build());
+            }
+            results.sort(Comparator.comparingDouble((Document d) -> d.getScore()).reversed());
+            return results;
+        
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return passages.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void addLocked(IndexedPassage passage) {
+        String id = passage.document().getId();
+        passages.put(id, passage);
+        totalLength += passage.length();
+        passage.termFrequencies().forEach((term, frequency) ->
+            postings.computeIfAbsent(term, t -> new HashMap<>()).put(id, frequency));
+    }
+    
+    private void touchLocked(String id) {
+        if (touchedDuringReload != null) {
+            touchedDuringReload.add(id);
+        }
+    }
+    
+    private void removeLocked(String id) {
+        IndexedPassage previous = passages.remove(id);
+        if (previous == null) {
+            return;
+        }
+        
+        totalLength -= previous.length();
+        for (String term : previous.termFrequencies().keySet()) {
+            Map<String, Integer> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(id);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+    
+    private static IndexedPassage analyze(Document document) {
+        Object title = document.getMetadata().get("title");
+        List<String> terms = tokenize((title != null ? title + "\n" : "") + document.getText());
+        
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String term : terms) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+        return new IndexedPassage(document, terms.size(), termFrequencies);
+    }
+    
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+            .replaceAll("")
+            .toLowerCase(Locale.ROOT);
+        
+        Matcher matcher = TOKEN.matcher(normalized);
+        while (matcher.find()) {
+            String token = matcher.group();
+            terms.add(token);
+            
+            Matcher parts = TOKEN_PART.matcher(token);
+            if (parts.find() && parts.end() < token.length()) {
+                do {
+                    terms.add(parts.group());
+                } while (parts.find());
+            }
+        }
+        return terms;
+    }
+    
+    /**
+     * Passages à indexer et identifiants de passages à retirer, relus en base
+     */
+    public record Changes(Collection<Document> upserts, Collection<String> removals) {
+    }
+    
+    private record IndexedPassage(Document document, int length, Map<String, Integer> termFrequencies) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.entity.KnowledgeDocument;
+import com.github.boisvertmathieu.aichatbot.repository.KnowledgeDocumentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Construit l'index lexical au démarrage depuis les passages de la base de connaissances, puis le
+ * réconcilie périodiquement : les indexations planifiées ne s'exécutent que sur un nœud (ShedLock),
+ * les autres nœuds rattrapent ainsi leurs modifications. Seuls les documents modifiés depuis le point
+ * de reprise ({@code updated_timestamp}, avec une marge pour les transactions validées en retard)
+ * sont relus, et ceux supprimés de la base sont retirés.
+ */
+@Component
+@ConditionalOnProperty(name = "chatbot.rag.lexical.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class LexicalIndexLoader {
+    
+    private static final int PAGE_SIZE = 500;
+    
+    private final LexicalIndex lexicalIndex;
+    private final KnowledgeDocumentRepository knowledgeDocumentRepository;
+    private final KnowledgeChunkService knowledgeChunkService;
+    
+    @Value("${chatbot.rag.lexical.refresh-overlap:PT5M}")
+    private Duration refreshOverlap;
+    
+    // Dernier updated_timestamp reflété par l'index, null tant que le chargement initial n'a pas abouti
+    private LocalDateTime watermark;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        try {
+            List<Document> passages = new ArrayList<>();
+            LocalDateTime[] latestUpdate = new LocalDateTime[1];
+            
+            lexicalIndex.reload(() -> {
+                Page<KnowledgeDocument> page;
+                int pageNumber = 0;
+                
+                do {
+                    page = knowledgeDocumentRepository.findAll(PageRequest.of(pageNumber++, PAGE_SIZE, Sort.by("id")));
+                    if (page.hasContent()) {
+                        passages.addAll(knowledgeChunkService.loadVectorDocuments(page.getContent()));
+                        latestUpdate[0] = latest(latestUpdate[0], page.getContent());
+                    }
+                } while (page.hasNext());
+                
+                return new LexicalIndex.Changes(passages, List.of());
+            });
+            
+            watermark = latestUpdate[0] != null ? latestUpdate[0] : LocalDateTime.now();
+            
+            log.info("Index lexical construit: {} passages", passages.size());
+        
+        } catch (Exception e) {
+            log.error("Erreur lors de la construction de l'index lexical: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Relit les documents modifiés depuis le point de reprise et retire ceux supprimés de la base
+     */
+    @Scheduled(initialDelayString = "${chatbot.rag.lexical.refresh-interval-ms:300000}",
+               fixedDelayString = "${chatbot.rag.lexical.refresh-interval-ms:300000}")
+    public synchronized void refresh() {
+        if (watermark == null) {
+            load();
+            return;
+        }
+        
+        try {
+            LocalDateTime since = watermark.minus(refreshOverlap);
+            LocalDateTime[] latestUpdate = {watermark};
+            int[] refreshed = new int[1];
+            
+            lexicalIndex.reload(() -> {
+                List<Document> upserts = new ArrayList<>();
+                List<String> removals = new ArrayList<>();
+                int pageNumber = 0;
+                Slice<KnowledgeDocument> page;
+                
+                do {
+                    page = knowledgeDocumentRepository.findByUpdatedTimestampAfter(
+                        since, PageRequest.of(pageNumber++, PAGE_SIZE, Sort.by("id")));
+                    if (!page.hasContent()) {
+                        break;
+                    }
+                    
+                    List<Document> passages = knowledgeChunkService.loadVectorDocuments(page.getContent());
+                    
+                    // Passages disparus des documents modifiés (document raccourci ou redécoupé)
+                    Set<String> currentChunkIds = passages.stream().map(Document::getId).collect(Collectors.toSet());
+                    lexicalIndex.chunkIdsOf(page.getContent().stream().map(KnowledgeDocument::getDocumentId).toList())
+                        .stream()
+                        .filter(chunkId -> !currentChunkIds.contains(chunkId))
+                        .forEach(removals::add);
+                    
+                    upserts.addAll(passages);
+                    refreshed[0] += page.getNumberOfElements();
+                    latestUpdate[0] = latest(latestUpdate[0], page.getContent());
+                } while (page.hasNext());
+                
+                // Documents supprimés de la base : aucune trace dans updated_timestamp, comparaison des identifiants
+                Set<String> deletedDocumentIds = new HashSet<>(lexicalIndex.parentDocumentIds());
+                deletedDocumentIds.removeAll(knowledgeDocumentRepository.findAllDocumentIds());
+                if (!deletedDocumentIds.isEmpty()) {
+                    removals.addAll(lexicalIndex.chunkIdsOf(deletedDocumentIds));
+                }
+                
+                return new LexicalIndex.Changes(upserts, removals);
+            });
+            
+            watermark = latestUpdate[0];
+            
+            if (refreshed[0] > 0) {
+                log.info("Index lexical réconcilié: {} documents relus", refreshed[0]);
+            }
+        
+        } catch (Exception e) {
+            log.error("Erreur lors de la réconciliation de l'index lexical: {}", e.getMessage(), e);
+        }
+    }
+    
+    private static LocalDateTime latest(LocalDateTime current, List<KnowledgeDocument> documents) {
+        LocalDateTime latest = current;
+        for (KnowledgeDocument document : documents) {
+            LocalDateTime updated = document.getUpdatedTimestamp();
+            if (updated != null && (latest == null || updated.isAfter(latest))) {
+                latest = updated;
+            }
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Cloison autour des appels à Azure OpenAI : borne le nombre d'appels simultanés, fait patienter
+ * les suivants au plus {@code max-wait}, et rejette immédiatement au-delà de {@code max-waiting} en attente.
+ */
+@Component
+@Slf4j
+public class LlmBulkhead {
+    
+    private final Semaphore permits;
+    private final int maxWaiting;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter timeoutRejections;
+    private final Counter queueFullRejections;
+    
+    public LlmBulkhead(MeterRegistry meterRegistry,
+                       @Value("${chatbot.llm.bulkhead.max-concurrent:20}") int maxConcurrent,
+                       @Value("${chatbot.llm.bulkhead.max-waiting:1000}") int maxWaiting,
+                       @Value("${chatbot.llm.bulkhead.max-wait:PT10S}") Duration maxWait,
+                       @Value("${chatbot.llm.bulkhead.retry-after:PT5S}") Duration retryAfter) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxWaiting = maxWaiting;
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+        
+        this.timeoutRejections = meterRegistry.counter("chatbot.llm.bulkhead.rejections", "cause", "timeout");
+        this.queueFullRejections = meterRegistry.counter("chatbot.llm.bulkhead.rejections", "cause", "queue_full");
+        meterRegistry.gauge("chatbot.llm.bulkhead.available", permits, Semaphore::availablePermits);
+        meterRegistry.gauge("chatbot.llm.bulkhead.waiting", waiting);
+    }
+    
+    /**
+     * Exécute un appel bloquant sous la cloison
+     */
+    public <T> T call(Supplier<T> llmCall) {
+        acquire();
+        try {
+            return llmCall.get();
+        } finally {
+            permits.release();
+        }
+    }
+    
+    /**
+     * Le permis est pris à l'abonnement et rendu à la fin, l'erreur ou l'annulation du flux
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> llmStream) {
+        return Flux.defer(() -> {
+            acquire();
+            try {
+                return llmStream.get().doFinally(signal -> permits.release());
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        });
+    }
+    
+    private void acquire() {
+        // tryAcquire() sans délai passerait devant les appels en attente malgré la sémaphore équitable
+        try {
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkheadFullException(retryAfter);
+        }
+        
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            queueFullRejections.increment();
+            log.warn("Cloison Azure OpenAI saturée: {} appels déjà en attente", maxWaiting);
+            throw new BulkheadFullException(retryAfter);
+        }
+        
+        try {
+            if (!permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                timeoutRejections.increment();
+                log.warn("Aucune capacité Azure OpenAI libérée en {} ms", maxWait.toMillis());
+                throw new BulkheadFullException(retryAfter);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkheadFullException(retryAfter);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Levée quand la capacité d'appel à Azure OpenAI est épuisée ; le client doit réessayer plus tard
+     */
+    @Getter
+    public static class BulkheadFullException extends RuntimeException {
+        
+        private final Duration retryAfter;
+        
+        public BulkheadFullException(Duration retryAfter) {
+            super("Le service est momentanément saturé, veuillez réessayer plus tard");
+            this.retryAfter = retryAfter;
+        }
+    }
+}
\ No newline at end of file
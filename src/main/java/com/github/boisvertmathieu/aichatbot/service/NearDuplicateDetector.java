@@ -0,0 +1,193 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Détection de quasi-doublons par MinHash : la similarité de Jaccard entre les ensembles de triplets de mots
+ * de deux textes est estimée par la proportion de valeurs égales de leurs signatures. Les candidats sont
+ * trouvés par LSH (signatures découpées en bandes), sans comparer chaque texte à tous les autres.
+ */
+@Component
+public class NearDuplicateDetector {
+    
+    static final int SIGNATURE_SIZE = 128;
+    
+    // 16 bandes de 8 valeurs : deux textes deviennent candidats à partir d'une similarité d'environ 0,7
+    private static final int BANDS = 16;
+    private static final int ROWS = SIGNATURE_SIZE / BANDS;
+    private static final int SHINGLE_WORDS = 3;
+    
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    
+    // Graines fixes : les signatures persistées restent comparables d'une exécution à l'autre
+    private static final long[] SEEDS = new SplittableRandom(0x5EEDL).longs(SIGNATURE_SIZE).toArray();
+    
+    private final double threshold;
+    
+    public NearDuplicateDetector(@Value("${chatbot.indexing.near-duplicate.threshold:0.8}") double threshold) {
+        this.threshold = threshold;
+    }
+    
+    public int[] signature(String text) {
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        
+        for (long shingle : shingles(text)) {
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                int value = (int) mix(shingle ^ SEEDS[i]);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+    
+    /**
+     * Estimation de la similarité de Jaccard entre les deux textes, entre 0 et 1
+     */
+    public static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+    
+    public Index newIndex() {
+        return new Index();
+    }
+    
+    public static String encode(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+    
+    /**
+     * @return la signature, ou null si la valeur stockée n'en est pas une (taille différente)
+     */
+    public static int[] decode(String encoded) {
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+        if (bytes.length != SIGNATURE_SIZE * Integer.BYTES) {
+            return null;
+        }
+        int[] signature = new int[SIGNATURE_SIZE];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+    
+    /**
+     * Triplets de mots consécutifs, après mise en minuscules et retrait de la ponctuation ; un texte
+     * plus court qu'un triplet forme un seul élément
+     */
+    private static Set<Long> shingles(String text) {
+        String[] words = NON_WORD.split(text.toLowerCase(Locale.ROOT).strip());
+        List<String> tokens = Arrays.stream(words).filter(word -> !word.isEmpty()).toList();
+        
+        Set<Long> shingles = new LinkedHashSet<>();
+        if (tokens.size() < SHINGLE_WORDS) {
+            shingles.add(hash(String.join(" ", tokens)));
+            return shingles;
+        }
+        for (int i = 0; i + SHINGLE_WORDS <= tokens.size(); i++) {
+            shingles.add(hash(String.join(" ", tokens.subList(i, i + SHINGLE_WORDS))));
+        }
+        return shingles;
+    }
+    
+    // FNV-1a 64 bits
+    private static long hash(String shingle) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : shingle.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+    
+    // Finaliseur de SplitMix64 : une permutation différente par graine
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+    
+    /**
+     * Index LSH de signatures, non synchronisé : construit et utilisé par une seule exécution d'indexation
+     */
+    public final class Index {
+        
+        private final Map<String, int[]> signatures = new HashMap<>();
+        private final List<Map<Integer, List<String>>> buckets = new ArrayList<>(BANDS);
+        
+        private Index() {
+            for (int band = 0; band < BANDS; band++) {
+                buckets.add(new HashMap<>());
+            }
+        }
+        
+        /**
+         * Ajoute ou remplace la signature d'un document
+         */
+        public void put(String documentId, int[] signature) {
+            int[] previous = signatures.put(documentId, signature);
+            for (int band = 0; band < BANDS; band++) {
+                if (previous != null && bandKey(previous, band) == bandKey(signature, band)) {
+                    continue;
+                }
+                buckets.get(band).computeIfAbsent(bandKey(signature, band), key -> new ArrayList<>()).add(documentId);
+            }
+        }
+        
+        /**
+         * Le document le plus proche dont la similarité atteint le seuil, parmi les candidats partageant
+         * au moins une bande avec la signature
+         */
+        public Optional<Match> findDuplicate(int[] signature) {
+            Set<String> candidates = new LinkedHashSet<>();
+            for (int band = 0; band < BANDS; band++) {
+                candidates.addAll(buckets.get(band).getOrDefault(bandKey(signature, band), List.of()));
+            }
+            
+            Match best = null;
+            for (String documentId : candidates) {
+                // Les buckets peuvent garder une ancienne signature d'un document remplacé : seule la dernière compte
+                double similarity = similarity(signature, signatures.get(documentId));
+                if (similarity >= threshold && (best == null || similarity > best.similarity())) {
+                    best = new Match(documentId, similarity);
+                }
+            }
+            return Optional.ofNullable(best);
+        }
+        
+        public int size() {
+            return signatures.size();
+        }
+        
+        private static int bandKey(int[] signature, int band) {
+            return Arrays.hashCode(Arrays.copyOfRange(signature, band * ROWS, (band + 1) * ROWS));
+        }
+    }
+    
+    public record Match(String documentId, double similarity) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.config.ReindexJobConfiguration;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Lancement asynchrone, suivi et redémarrage du job de réindexation complète
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReindexJobService {
+    
+    private final JobRepository jobRepository;
+    private final JobExplorer jobExplorer;
+    private final Job reindexKnowledgeDocumentsJob;
+    
+    private TaskExecutorJobLauncher jobLauncher;
+    
+    @PostConstruct
+    void initJobLauncher() throws Exception {
+        jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.setTaskExecutor(new SimpleAsyncTaskExecutor("reindex-launcher-"));
+        jobLauncher.afterPropertiesSet();
+    }
+    
+    public JobExecution launch() throws Exception {
+        if (!jobExplorer.findRunningJobExecutions(ReindexJobConfiguration.JOB_NAME).isEmpty()) {
+            throw new IllegalStateException("Une réindexation est déjà en cours");
+        }
+        
+        JobExecution execution = jobLauncher.run(reindexKnowledgeDocumentsJob, new JobParametersBuilder()
+            .addLong("requestedAt", System.currentTimeMillis())
+            .toJobParameters());
+        
+        log.info("Réindexation complète lancée (execution {})", execution.getId());
+        return execution;
+    }
+    
+    /**
+     * Relance une exécution en échec ou arrêtée : chaque partition reprend après son dernier lot validé
+     */
+    public JobExecution restart(long executionId) throws Exception {
+        JobExecution previous = findExecution(executionId)
+            .orElseThrow(() -> new IllegalArgumentException("Exécution de réindexation introuvable: " + executionId));
+        
+        if (previous.getStatus() != BatchStatus.FAILED && previous.getStatus() != BatchStatus.STOPPED) {
+            throw new IllegalStateException("Seule une exécution en échec ou arrêtée peut être relancée (statut: "
+                                            + previous.getStatus() + ")");
+        }
+        
+        JobExecution execution = jobLauncher.run(reindexKnowledgeDocumentsJob, previous.getJobParameters());
+        
+        log.info("Réindexation {} relancée (execution {})", executionId, execution.getId());
+        return execution;
+    }
+    
+    public Optional<JobExecution> findExecution(long executionId) {
+        JobExecution execution = jobExplorer.getJobExecution(executionId);
+        if (execution == null || !ReindexJobConfiguration.JOB_NAME.equals(execution.getJobInstance().getJobName())) {
+            return Optional.empty();
+        }
+        return Optional.of(execution);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,222 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache sémantique des réponses, indexé par l'embedding de la question.
+ * Une question suffisamment proche (similarité cosinus) d'une question déjà répondue
+ * réutilise la réponse sans recherche vectorielle ni appel à Azure OpenAI.
+ * Les recherches parcourent un instantané immuable des entrées, sans verrou ; seules les écritures
+ * (ajout, éviction, invalidation) sont sérialisées.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SemanticAnswerCache {
+    
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${chatbot.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${chatbot.cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+    
+    @Value("${chatbot.cache.max-entries:1000}")
+    private int maxEntries;
+    
+    @Value("${chatbot.cache.ttl:PT1H}")
+    private Duration ttl;
+    
+    // Ordre d'accès pour l'éviction LRU, protégé par le moniteur de l'instance
+    private final LinkedHashMap<String, CachedAnswer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    // Copie des entrées republiée à chaque écriture, parcourue par lookup() sans verrou
+    private volatile List<Slot> snapshot = List.of();
+    
+    // Incrémentée à chaque invalidation pour ignorer les réponses calculées avant celle-ci
+    private final AtomicLong generation = new AtomicLong();
+    
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter sizeEvictionCounter;
+    private Counter expiredEvictionCounter;
+    private Counter invalidationEvictionCounter;
+    
+    @PostConstruct
+    void registerMetrics() {
+        hitCounter = meterRegistry.counter("chatbot.cache.requests", "result", "hit");
+        missCounter = meterRegistry.counter("chatbot.cache.requests", "result", "miss");
+        sizeEvictionCounter = meterRegistry.counter("chatbot.cache.evictions", "cause", "size");
+        expiredEvictionCounter = meterRegistry.counter("chatbot.cache.evictions", "cause", "expired");
+        invalidationEvictionCounter = meterRegistry.counter("chatbot.cache.evictions", "cause", "invalidation");
+        meterRegistry.gauge("chatbot.cache.size", this, SemanticAnswerCache::size);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public long currentGeneration() {
+        return generation.get();
+    }
+    
+    /**
+     * Recherche la réponse en cache la plus proche de l'embedding fourni, si elle dépasse le seuil de similarité
+     */
+    public Optional<CachedAnswer> lookup(float[] questionEmbedding) {
+        if (!enabled || questionEmbedding == null) {
+            return Optional.empty();
+        }
+        
+        float[] normalized = normalize(questionEmbedding);
+        Instant now = Instant.now();
+        
+        Slot best = null;
+        double bestScore = similarityThreshold;
+        
+        // Les entrées expirées sont ignorées ici et retirées au prochain ajout
+        for (Slot slot : snapshot) {
+            if (slot.answer().isExpired(now, ttl)) {
+                continue;
+            }
+            
+            double score = dot(normalized, slot.answer().embedding());
+            if (score >= bestScore) {
+                bestScore = score;
+                best = slot;
+            }
+        }
+        
+        if (best == null) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+        
+        hitCounter.increment();
+        log.debug("Réponse trouvée dans le cache sémantique (similarité {})", bestScore);
+        
+        touch(best.key());
+        return Optional.of(best.answer());
+    }
+    
+    /**
+     * Ajoute une réponse au cache, sauf si la base de connaissances a changé depuis {@code expectedGeneration}
+     */
+    public synchronized void put(String question, float[] questionEmbedding, String response,
+                                 List<String> documentIds, long expectedGeneration) {
+        if (!enabled || questionEmbedding == null || expectedGeneration != generation.get()) {
+            return;
+        }
+        
+        Instant now = Instant.now();
+        Iterator<CachedAnswer> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now, ttl)) {
+                iterator.remove();
+                expiredEvictionCounter.increment();
+            }
+        }
+        
+        entries.put(normalizeQuestion(question), new CachedAnswer(
+            question, normalize(questionEmbedding), response, List.copyOf(documentIds), now));
+        
+        while (entries.size() > maxEntries) {
+            Iterator<String> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            sizeEvictionCounter.increment();
+        }
+        
+        publishSnapshot();
+    }
+    
+    /**
+     * Vide le cache, appelé dès que la base de connaissances est modifiée
+     */
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        
+        if (!entries.isEmpty()) {
+            invalidationEvictionCounter.increment(entries.size());
+            log.debug("Cache sémantique invalidé ({} entrées)", entries.size());
+            entries.clear();
+            publishSnapshot();
+        }
+    }
+    
+    public int size() {
+        return snapshot.size();
+    }
+    
+    /**
+     * Met à jour l'ordre d'accès LRU de l'entrée retournée, si elle n'a pas été évincée entre-temps
+     */
+    private synchronized void touch(String key) {
+        entries.get(key);
+    }
+    
+    private void publishSnapshot() {
+        snapshot = entries.entrySet().stream()
+            .map(entry -> new Slot(entry.getKey(), entry.getValue()))
+            .toList();
+    }
+    
+    static String normalizeQuestion(String question) {
+        return question.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+    
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+    
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+    
+    private record Slot(String key, CachedAnswer answer) {
+    }
+    
+    public record CachedAnswer(String question, float[] embedding, String response,
+                               List<String> documentIds, Instant createdAt) {
+        
+        boolean isExpired(Instant now, Duration ttl) {
+            return createdAt.plus(ttl).isBefore(now);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Regroupe les appels concurrents de même clé : le premier appelant exécute le calcul, ceux qui arrivent
+ * pendant son exécution attendent et partagent son résultat (ou son exception). La clé est libérée avant
+ * la publication du résultat : rien n'est conservé après coup, un appel ultérieur recalcule.
+ * <p>
+ * L'attente est bornée : un appelant qui attend plus de {@code maxWait} exécute le calcul lui-même,
+ * pour qu'un premier appelant bloqué n'immobilise pas toutes les requêtes regroupées derrière lui.
+ */
+public class SingleFlight<K, V> {
+    
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    
+    public Result<V> execute(K key, Duration maxWait, Supplier<V> action) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            try {
+                return new Result<>(await(inFlight, maxWait), true);
+            } catch (WaitTimeoutException e) {
+                return new Result<>(action.get(), false);
+            }
+        }
+        
+        V value;
+        try {
+            value = action.get();
+        } catch (RuntimeException | Error e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+        
+        calls.remove(key, call);
+        call.complete(value);
+        return new Result<>(value, false);
+    }
+    
+    public int inFlight() {
+        return calls.size();
+    }
+    
+    private V await(CompletableFuture<V> call, Duration maxWait) {
+        try {
+            // Copie : le délai d'un appelant ne doit pas faire échouer l'appel partagé par les autres
+            return call.copy().orTimeout(maxWait.toMillis(), TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new WaitTimeoutException();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * @param shared true si le résultat a été calculé par un autre appelant
+     */
+    public record Result<V>(V value, boolean shared) {
+    }
+    
+    private static class WaitTimeoutException extends RuntimeException {
+        
+        WaitTimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+}
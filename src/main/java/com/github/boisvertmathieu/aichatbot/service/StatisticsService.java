@@ -0,0 +1,130 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.repository.ConversationRepository;
+import com.github.boisvertmathieu.aichatbot.repository.KnowledgeDocumentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compteurs pré-agrégés servis par {@code /api/admin/stats} et exportés en jauges Micrometer.
+ * Ils sont mis à jour à chaque événement (après validation de la transaction), puis réalignés
+ * périodiquement sur la base pour corriger toute dérive, notamment les événements des autres nœuds.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatisticsService {
+    
+    private final ConversationRepository conversationRepository;
+    private final KnowledgeDocumentRepository knowledgeDocumentRepository;
+    private final ConversationArchiveService conversationArchiveService;
+    private final MeterRegistry meterRegistry;
+    
+    private final AtomicLong totalConversations = new AtomicLong();
+    private final AtomicLong positiveFeedback = new AtomicLong();
+    private final AtomicLong negativeFeedback = new AtomicLong();
+    private final AtomicLong totalDocuments = new AtomicLong();
+    private final AtomicLong indexedDocuments = new AtomicLong();
+    private final AtomicReference<Instant> reconciledAt = new AtomicReference<>();
+    
+    @PostConstruct
+    void registerMetrics() {
+        meterRegistry.gauge("chatbot.stats.conversations", totalConversations);
+        meterRegistry.gauge("chatbot.stats.feedback", Tags.of("type", "positive"), positiveFeedback);
+        meterRegistry.gauge("chatbot.stats.feedback", Tags.of("type", "negative"), negativeFeedback);
+        meterRegistry.gauge("chatbot.stats.documents", Tags.of("state", "total"), totalDocuments);
+        meterRegistry.gauge("chatbot.stats.documents", Tags.of("state", "indexed"), indexedDocuments);
+    }
+    
+    /**
+     * Réalignement sur la base : au démarrage puis périodiquement, sur chaque nœud
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${chatbot.stats.reconcile-interval-ms:300000}",
+               fixedDelayString = "${chatbot.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            // Tours encore en table et tours archivés (compteurs tirés de l'index de l'archive)
+            ConversationArchiveService.ArchiveTotals archived = conversationArchiveService.totals();
+            totalConversations.set(conversationRepository.count() + archived.conversations());
+            positiveFeedback.set(conversationRepository.countPositiveFeedback() + archived.positiveFeedback());
+            negativeFeedback.set(conversationRepository.countNegativeFeedback() + archived.negativeFeedback());
+            totalDocuments.set(knowledgeDocumentRepository.count());
+            indexedDocuments.set(knowledgeDocumentRepository.countIndexedDocuments());
+            reconciledAt.set(Instant.now());
+            
+            log.debug("Statistiques réalignées sur la base");
+        
+        } catch (Exception e) {
+            log.error("Erreur lors du réalignement des statistiques: {}", e.getMessage(), e);
+        }
+    }
+    
+    public void onConversationSaved() {
+        afterCommit(totalConversations::incrementAndGet);
+    }
+    
+    /**
+     * Le feedback peut remplacer un feedback précédent du même tour
+     */
+    public void onFeedbackChanged(Boolean previousUseful, Boolean currentUseful) {
+        afterCommit(() -> {
+            adjustFeedback(previousUseful, -1);
+            adjustFeedback(currentUseful, 1);
+        });
+    }
+    
+    public void onDocumentsAdded(long count) {
+        afterCommit(() -> totalDocuments.addAndGet(count));
+    }
+    
+    public void onDocumentsIndexed(long count) {
+        if (count > 0) {
+            afterCommit(() -> indexedDocuments.addAndGet(count));
+        }
+    }
+    
+    public Statistics snapshot() {
+        return new Statistics(totalConversations.get(), positiveFeedback.get(), negativeFeedback.get(),
+                              totalDocuments.get(), indexedDocuments.get(), reconciledAt.get());
+    }
+    
+    private void adjustFeedback(Boolean useful, int delta) {
+        if (Boolean.TRUE.equals(useful)) {
+            positiveFeedback.addAndGet(delta);
+        } else if (Boolean.FALSE.equals(useful)) {
+            negativeFeedback.addAndGet(delta);
+        }
+    }
+    
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+    
+    public record Statistics(long totalConversations, long positiveFeedback, long negativeFeedback,
+                             long totalDocuments, long indexedDocuments, Instant reconciledAt) {
+    }
+}
\ No newline at end of file
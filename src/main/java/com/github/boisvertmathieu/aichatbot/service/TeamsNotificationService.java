@@ -1,22 +1,25 @@
 package com.github.boisvertmathieu.aichatbot.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.boisvertmathieu.aichatbot.entity.TeamsOutboxMessage;
+import com.github.boisvertmathieu.aichatbot.repository.TeamsOutboxRepository;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.Map;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class TeamsNotificationService {
     
-    private final RestTemplate restTemplate;
+    private final TeamsOutboxRepository teamsOutboxRepository;
+    private final ObjectMapper objectMapper;
     
     @Value("${teams.webhook.test-channel}")
     private String testChannelWebhook;
@@ -27,37 +30,45 @@ public class TeamsNotificationService {
     @Value("${teams.mode:test}")
     private String teamsMode;
     
-    public TeamsNotificationService() {
-        this.restTemplate = new RestTemplate();
+    /**
+     * Ajoute la réponse à l'outbox Teams dans la transaction courante.
+     * L'envoi effectif est assuré en arrière-plan par {@link TeamsOutboxDispatcher}.
+     * <p>
+     * L'insertion dans l'outbox fait partie de l'unité atomique de l'appelant : une erreur est propagée
+     * (et annule le tour de conversation) plutôt qu'absorbée dans une transaction déjà marquée rollback-only.
+     */
+    @Transactional
+    public void sendResponse(String conversationId, String response) {
+        String webhook = "test".equals(teamsMode) ? testChannelWebhook : productionChannelWebhook;
+        String channelType = "test".equals(teamsMode) ? "Test" : "Production";
+        
+        Map<String, Object> messageCard = createAdaptiveCard(conversationId, response, channelType);
+        
+        enqueue(conversationId, webhook, messageCard);
+        
+        log.debug("Message Teams ({}) ajouté à l'outbox pour conversationId: {}", channelType, conversationId);
     }
     
-    public void sendResponse(String conversationId, String response) {
+    private void enqueue(String conversationId, String webhook, Map<String, Object> messageCard) {
+        String payload;
         try {
-            String webhook = "test".equals(teamsMode) ? testChannelWebhook : productionChannelWebhook;
-            String channelType = "test".equals(teamsMode) ? "Test" : "Production";
-            
-            Map<String, Object> messageCard = createAdaptiveCard(conversationId, response, channelType);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(messageCard, headers);
-            
-            ResponseEntity<String> result = restTemplate.postForEntity(webhook, entity, String.class);
-            
-            if (result.getStatusCode().is2xxSuccessful()) {
-                log.info("Message envoyé avec succès vers Teams ({}) pour conversationId: {}", 
-                         channelType, conversationId);
-            } else {
-                log.error("Erreur lors de l'envoi vers Teams: {}", result.getStatusCode());
-            }
-            
-        } catch (Exception e) {
-            log.error("Erreur lors de l'envoi de la notification Teams: {}", e.getMessage(), e);
+            payload = objectMapper.writeValueAsString(messageCard);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Carte Teams impossible à sérialiser pour conversationId " + conversationId, e);
         }
+        
+        TeamsOutboxMessage message = TeamsOutboxMessage.builder()
+            .conversationId(conversationId)
+            .webhookUrl(webhook)
+            .payload(payload)
+            .status(TeamsOutboxMessage.Status.PENDING)
+            .attempts(0)
+            .build();
+        
+        teamsOutboxRepository.save(message);
     }
     
-    private Map<String, Object> createAdaptiveCard(String conversationId, String response, String channelType) {
+    Map<String, Object> createAdaptiveCard(String conversationId, String response, String channelType) {
         Map<String, Object> card = new HashMap<>();
         card.put("@type", "MessageCard");
         card.put("@context", "http://schema.org/extensions");
@@ -115,26 +126,13 @@ public class TeamsNotificationService {
         return card;
     }
     
+    @Transactional
     public void sendErrorNotification(String conversationId, String errorMessage) {
-        try {
-            String webhook = testChannelWebhook; // Les erreurs vont toujours sur le canal de test
-            
-            Map<String, Object> messageCard = createErrorCard(conversationId, errorMessage);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(messageCard, headers);
-            
-            ResponseEntity<String> result = restTemplate.postForEntity(webhook, entity, String.class);
-            
-            if (result.getStatusCode().is2xxSuccessful()) {
-                log.info("Notification d'erreur envoyée vers Teams pour conversationId: {}", conversationId);
-            }
-            
-        } catch (Exception e) {
-            log.error("Erreur lors de l'envoi de la notification d'erreur Teams: {}", e.getMessage(), e);
-        }
+        String webhook = testChannelWebhook; // Les erreurs vont toujours sur le canal de test
+        
+        Map<String, Object> messageCard = createErrorCard(conversationId, errorMessage);
+        
+        enqueue(conversationId, webhook, messageCard);
     }
     
     private Map<String, Object> createErrorCard(String conversationId, String errorMessage) {
@@ -0,0 +1,226 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.entity.TeamsOutboxMessage;
+import com.github.boisvertmathieu.aichatbot.repository.TeamsOutboxRepository;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Livre en arrière-plan les messages de l'outbox Teams.
+ * Les messages dus sont lus par lots, envoyés par un pool borné avec une limite de
+ * concurrence par webhook, puis replanifiés avec un backoff exponentiel en cas d'échec.
+ * Un webhook déjà à sa limite est sauté : ses messages restent dus pour le passage suivant,
+ * sans immobiliser un thread du pool en attente de permis.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TeamsOutboxDispatcher {
+    
+    private final TeamsOutboxRepository teamsOutboxRepository;
+    private final RestTemplate restTemplate;
+    private final ChatMetrics chatMetrics;
+    
+    @Value("${teams.outbox.batch-size:50}")
+    private int batchSize;
+    
+    @Value("${teams.outbox.worker-threads:4}")
+    private int workerThreads;
+    
+    @Value("${teams.outbox.queue-capacity:200}")
+    private int queueCapacity;
+    
+    @Value("${teams.outbox.per-webhook-concurrency:2}")
+    private int perWebhookConcurrency;
+    
+    @Value("${teams.outbox.max-attempts:8}")
+    private int maxAttempts;
+    
+    @Value("${teams.outbox.initial-backoff:PT5S}")
+    private Duration initialBackoff;
+    
+    @Value("${teams.outbox.max-backoff:PT10M}")
+    private Duration maxBackoff;
+    
+    @Value("${teams.outbox.retention:P7D}")
+    private Duration retention;
+    
+    private ThreadPoolExecutor executor;
+    
+    @PostConstruct
+    void startExecutor() {
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                                          new ArrayBlockingQueue<>(queueCapacity),
+                                          Thread.ofPlatform().name("teams-outbox-", 0).factory(),
+                                          new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    @PreDestroy
+    void stopExecutor() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Envoie les messages dus de l'outbox. S'exécute en continu, sur un seul nœud à la fois
+     */
+    @Scheduled(fixedDelayString = "${teams.outbox.poll-interval-ms:2000}")
+    @SchedulerLock(name = "dispatchTeamsOutbox",
+                   lockAtMostFor = "PT5M",
+                   lockAtLeastFor = "PT0S")
+    public void dispatchPendingMessages() {
+        List<TeamsOutboxMessage> dueMessages = teamsOutboxRepository.findDueMessages(
+            LocalDateTime.now(), PageRequest.of(0, batchSize));
+        
+        if (dueMessages.isEmpty()) {
+            return;
+        }
+        
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+        List<TeamsOutboxMessage> dispatched = new ArrayList<>();
+        
+        // Au plus per-webhook-concurrency files par webhook, chacune envoyant ses messages l'un après l'autre.
+        // Le passage attend toutes ses files avant de rendre la main : deux passages ne se chevauchent jamais
+        Map<String, List<List<TeamsOutboxMessage>>> lanesByWebhook = new LinkedHashMap<>();
+        for (TeamsOutboxMessage message : dueMessages) {
+            List<List<TeamsOutboxMessage>> lanes = lanesByWebhook.computeIfAbsent(message.getWebhookUrl(),
+                                                                                  url -> new ArrayList<>());
+            if (lanes.size() < perWebhookConcurrency) {
+                lanes.add(new ArrayList<>());
+            }
+            lanes.stream().min(Comparator.comparingInt(List::size)).orElseThrow().add(message);
+        }
+        
+        dispatch:
+        for (List<List<TeamsOutboxMessage>> lanes : lanesByWebhook.values()) {
+            for (List<TeamsOutboxMessage> lane : lanes) {
+                try {
+                    deliveries.add(CompletableFuture.runAsync(() -> lane.forEach(this::deliver), executor));
+                    dispatched.addAll(lane);
+                } catch (RejectedExecutionException e) {
+                    // File pleine : les messages restants attendent le prochain passage
+                    log.debug("File d'envoi Teams saturée, {} messages reportés", lane.size());
+                    break dispatch;
+                }
+            }
+        }
+        
+        CompletableFuture.allOf(deliveries.toArray(CompletableFuture[]::new)).join();
+        
+        // Mise à jour groupée des statuts des messages traités
+        teamsOutboxRepository.saveAll(dispatched);
+        
+        log.debug("{} messages Teams traités depuis l'outbox", dispatched.size());
+    }
+    
+    /**
+     * Purge quotidienne des messages déjà envoyés
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    @SchedulerLock(name = "purgeTeamsOutbox",
+                   lockAtMostFor = "PT10M",
+                   lockAtLeastFor = "PT1M")
+    @Transactional
+    public void purgeSentMessages() {
+        int deleted = teamsOutboxRepository.deleteSentBefore(LocalDateTime.now().minus(retention));
+        
+        if (deleted > 0) {
+            log.info("{} messages Teams envoyés purgés de l'outbox", deleted);
+        }
+    }
+    
+    private void deliver(TeamsOutboxMessage message) {
+        try {
+            Timer.Sample sample = chatMetrics.start();
+            String outcome = ChatMetrics.OUTCOME_ERROR;
+            try {
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentType(MediaType.APPLICATION_JSON);
+                
+                restTemplate.postForEntity(message.getWebhookUrl(),
+                                           new HttpEntity<>(message.getPayload(), headers), String.class);
+                
+                message.setStatus(TeamsOutboxMessage.Status.SENT);
+                message.setSentTimestamp(LocalDateTime.now());
+                message.setAttempts(message.getAttempts() + 1);
+                message.setLastError(null);
+                outcome = ChatMetrics.OUTCOME_SUCCESS;
+                
+                log.info("Message envoyé avec succès vers Teams pour conversationId: {}", message.getConversationId());
+            
+            } finally {
+                chatMetrics.stopStage(sample, ChatMetrics.STAGE_TEAMS, outcome);
+            }
+        
+        } catch (HttpStatusCodeException e) {
+            scheduleRetry(message, e.getStatusCode() + " " + e.getStatusText(),
+                          retryAfter(e.getResponseHeaders()));
+        } catch (Exception e) {
+            scheduleRetry(message, e.getMessage(), null);
+        }
+    }
+    
+    private void scheduleRetry(TeamsOutboxMessage message, String error, Duration retryAfter) {
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        message.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        
+        if (attempts >= maxAttempts) {
+            message.setStatus(TeamsOutboxMessage.Status.FAILED);
+            log.error("Abandon de l'envoi Teams pour conversationId {} après {} tentatives: {}",
+                     message.getConversationId(), attempts, error);
+            return;
+        }
+        
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        if (backoff.compareTo(maxBackoff) > 0) {
+            backoff = maxBackoff;
+        }
+        if (retryAfter != null && retryAfter.compareTo(backoff) > 0) {
+            backoff = retryAfter;
+        }
+        
+        message.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+        
+        log.warn("Échec de l'envoi Teams pour conversationId {} (tentative {}), nouvel essai dans {}s: {}",
+                 message.getConversationId(), attempts, backoff.toSeconds(), error);
+    }
+    
+    private Duration retryAfter(HttpHeaders headers) {
+        if (headers == null || headers.getFirst(HttpHeaders.RETRY_AFTER) == null) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(headers.getFirst(HttpHeaders.RETRY_AFTER).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,352 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.entity.TokenLedgerEntry;
+import com.github.boisvertmathieu.aichatbot.repository.TokenLedgerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Contrôle d'admission par seaux de tokens LLM, par utilisateur et global. Les seaux sont débités des
+ * tokens réellement consommés (usage rapporté par Azure OpenAI), et peuvent donc passer en négatif :
+ * une question n'est admise que si le seau est positif, la dette retardant les suivantes.
+ * <p>
+ * Le registre en mémoire est découpé en segments verrouillés séparément. Les consommations locales sont
+ * reportées périodiquement dans {@code token_ledger}, dont les cumuls révèlent la consommation des autres
+ * instances, débitée à son tour des seaux locaux.
+ */
+@Service
+@Slf4j
+public class TokenAdmissionService {
+    
+    static final String GLOBAL_KEY = "*";
+    
+    private static final Duration IDLE_EVICTION = Duration.ofMinutes(10);
+    
+    private final TokenLedgerRepository tokenLedgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Limit userLimit;
+    private final Limit globalLimit;
+    private final Duration flushInterval;
+    private final Stripe[] stripes;
+    private final Stripe globalStripe = new Stripe();
+    private final Counter userRejections;
+    private final Counter globalRejections;
+    
+    private LocalDateTime lastSync;
+    
+    public TokenAdmissionService(TokenLedgerRepository tokenLedgerRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${chatbot.admission.enabled:true}") boolean enabled,
+                                 @Value("${chatbot.admission.user.tokens-per-minute:20000}") long userTokensPerMinute,
+                                 @Value("${chatbot.admission.user.burst:20000}") long userBurst,
+                                 @Value("${chatbot.admission.global.tokens-per-minute:240000}") long globalTokensPerMinute,
+                                 @Value("${chatbot.admission.global.burst:240000}") long globalBurst,
+                                 @Value("${chatbot.admission.flush-interval-ms:5000}") long flushIntervalMs,
+                                 @Value("${chatbot.admission.stripes:64}") int stripeCount) {
+        this.tokenLedgerRepository = tokenLedgerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.userLimit = new Limit(userBurst, userTokensPerMinute / 60e9);
+        this.globalLimit = new Limit(globalBurst, globalTokensPerMinute / 60e9);
+        this.flushInterval = Duration.ofMillis(flushIntervalMs);
+        
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        
+        this.userRejections = meterRegistry.counter("chatbot.admission.rejections", "scope", "user");
+        this.globalRejections = meterRegistry.counter("chatbot.admission.rejections", "scope", "global");
+        meterRegistry.gauge("chatbot.admission.global.available", this,
+                            service -> service.globalStripe.available(GLOBAL_KEY, globalLimit, System.nanoTime()));
+    }
+    
+    /**
+     * Vérifie, sans rien débiter, que l'utilisateur et le service disposent encore de tokens
+     *
+     * @throws TokenBudgetExceededException avec le délai avant que le seau redevienne positif
+     */
+    public void admit(String userId) {
+        if (!enabled) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        Duration globalWait = globalStripe.waitTime(GLOBAL_KEY, globalLimit, now);
+        if (!globalWait.isZero()) {
+            globalRejections.increment();
+            throw new TokenBudgetExceededException("global", globalWait);
+        }
+        
+        Duration userWait = stripeOf(userId).waitTime(userId, userLimit, now);
+        if (!userWait.isZero()) {
+            userRejections.increment();
+            log.warn("Budget de tokens épuisé pour userId {}, nouvel essai possible dans {} s",
+                     userId, userWait.toSeconds());
+            throw new TokenBudgetExceededException("user", userWait);
+        }
+    }
+    
+    /**
+     * Débite les tokens réellement consommés par une question de l'utilisateur
+     */
+    public void debit(String userId, Integer tokens) {
+        if (!enabled || tokens == null || tokens <= 0) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        stripeOf(userId).consume(userId, userLimit, tokens, now);
+        globalStripe.consume(GLOBAL_KEY, globalLimit, tokens, now);
+    }
+    
+    /**
+     * Débite le seau global seul, pour les appels qui ne sont pas imputables à un utilisateur (résumés)
+     */
+    public void debitGlobal(Integer tokens) {
+        if (!enabled || tokens == null || tokens <= 0) {
+            return;
+        }
+        globalStripe.consume(GLOBAL_KEY, globalLimit, tokens, System.nanoTime());
+    }
+    
+    /**
+     * Reporte les consommations locales en base puis applique celles des autres instances.
+     * En cas d'échec, les consommations sont conservées pour le report suivant.
+     */
+    @Scheduled(fixedDelayString = "${chatbot.admission.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        
+        Map<String, Long> deltas = new HashMap<>(globalStripe.drainPending());
+        for (Stripe stripe : stripes) {
+            deltas.putAll(stripe.drainPending());
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        // Chevauchement d'un intervalle pour tolérer l'écart d'horloge entre instances
+        LocalDateTime since = lastSync != null ? lastSync.minus(flushInterval) : now.minusMinutes(1);
+        
+        List<TokenLedgerEntry> entries;
+        try {
+            entries = transactionTemplate.execute(status -> {
+                deltas.forEach((key, tokens) -> {
+                    if (tokenLedgerRepository.addConsumption(key, tokens, now) == 0) {
+                        tokenLedgerRepository.save(TokenLedgerEntry.builder()
+                            .ledgerKey(key)
+                            .consumedTokens(tokens)
+                            .updatedTimestamp(now)
+                            .build());
+                    }
+                });
+                return tokenLedgerRepository.findByUpdatedTimestampAfter(since);
+            });
+        } catch (Exception e) {
+            log.warn("Report du registre de tokens impossible, nouvel essai au prochain cycle: {}", e.getMessage());
+            deltas.forEach((key, tokens) -> stripeFor(key).restorePending(key, tokens));
+            return;
+        }
+        
+        long nowNanos = System.nanoTime();
+        for (TokenLedgerEntry entry : entries) {
+            String key = entry.getLedgerKey();
+            stripeFor(key).reconcile(key, limitFor(key), entry.getConsumedTokens(),
+                                     deltas.getOrDefault(key, 0L), nowNanos);
+        }
+        for (Stripe stripe : stripes) {
+            stripe.evictIdle(userLimit, nowNanos);
+        }
+        lastSync = now;
+    }
+    
+    private Stripe stripeOf(String userId) {
+        return stripes[Math.floorMod(userId.hashCode(), stripes.length)];
+    }
+    
+    private Stripe stripeFor(String key) {
+        return GLOBAL_KEY.equals(key) ? globalStripe : stripeOf(key);
+    }
+    
+    private Limit limitFor(String key) {
+        return GLOBAL_KEY.equals(key) ? globalLimit : userLimit;
+    }
+    
+    /**
+     * @param capacity      tokens disponibles au plus (rafale)
+     * @param refillPerNano tokens regagnés par nanoseconde
+     */
+    private record Limit(long capacity, double refillPerNano) {
+    }
+    
+    private static final class Bucket {
+        
+        private double tokens;
+        private long lastRefill;
+        private long lastUsed;
+        /** Dernier cumul lu en base, -1 tant qu'aucun n'a été lu */
+        private long lastSeenConsumed = -1;
+        
+        Bucket(Limit limit, long now) {
+            this.tokens = limit.capacity();
+            this.lastRefill = now;
+            this.lastUsed = now;
+        }
+        
+        void refill(Limit limit, long now) {
+            tokens = Math.min(limit.capacity(), tokens + (now - lastRefill) * limit.refillPerNano());
+            lastRefill = now;
+        }
+    }
+    
+    /**
+     * Segment du registre : seaux et consommations non reportées d'un sous-ensemble des clés
+     */
+    private static final class Stripe {
+        
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Bucket> buckets = new HashMap<>();
+        private final Map<String, Long> pending = new HashMap<>();
+        
+        Duration waitTime(String key, Limit limit, long now) {
+            lock.lock();
+            try {
+                Bucket bucket = buckets.get(key);
+                if (bucket == null) {
+                    return Duration.ZERO;
+                }
+                bucket.refill(limit, now);
+                if (bucket.tokens > 0) {
+                    return Duration.ZERO;
+                }
+                return Duration.ofNanos((long) Math.ceil((1 - bucket.tokens) / limit.refillPerNano()));
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        double available(String key, Limit limit, long now) {
+            lock.lock();
+            try {
+                Bucket bucket = buckets.get(key);
+                if (bucket == null) {
+                    return limit.capacity();
+                }
+                bucket.refill(limit, now);
+                return bucket.tokens;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void consume(String key, Limit limit, long tokens, long now) {
+            lock.lock();
+            try {
+                Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(limit, now));
+                bucket.refill(limit, now);
+                bucket.tokens -= tokens;
+                bucket.lastUsed = now;
+                pending.merge(key, tokens, Long::sum);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        Map<String, Long> drainPending() {
+            lock.lock();
+            try {
+                Map<String, Long> drained = new HashMap<>(pending);
+                pending.clear();
+                return drained;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void restorePending(String key, long tokens) {
+            lock.lock();
+            try {
+                pending.merge(key, tokens, Long::sum);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Débite la consommation des autres instances : hausse du cumul en base non expliquée par nos reports
+         */
+        void reconcile(String key, Limit limit, long consumed, long flushed, long now) {
+            lock.lock();
+            try {
+                Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(limit, now));
+                if (bucket.lastSeenConsumed >= 0) {
+                    long remote = consumed - bucket.lastSeenConsumed - flushed;
+                    if (remote > 0) {
+                        bucket.refill(limit, now);
+                        bucket.tokens -= remote;
+                        bucket.lastUsed = now;
+                    }
+                }
+                bucket.lastSeenConsumed = consumed;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Oublie les seaux pleins inactifs : un seau absent est considéré plein
+         */
+        void evictIdle(Limit limit, long now) {
+            lock.lock();
+            try {
+                Iterator<Map.Entry<String, Bucket>> iterator = buckets.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, Bucket> entry = iterator.next();
+                    Bucket bucket = entry.getValue();
+                    bucket.refill(limit, now);
+                    if (bucket.tokens >= limit.capacity() && now - bucket.lastUsed > IDLE_EVICTION.toNanos()
+                        && !pending.containsKey(entry.getKey())) {
+                        iterator.remove();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Levée quand l'utilisateur ou le service a épuisé son budget de tokens ; le client doit réessayer plus tard
+     */
+    @Getter
+    public static class TokenBudgetExceededException extends RuntimeException {
+        
+        private final String scope;
+        private final Duration retryAfter;
+        
+        public TokenBudgetExceededException(String scope, Duration retryAfter) {
+            super("global".equals(scope)
+                  ? "Le quota de tokens du service est atteint, veuillez réessayer plus tard"
+                  : "Votre quota de tokens est atteint, veuillez réessayer plus tard");
+            this.scope = scope;
+            this.retryAfter = retryAfter;
+        }
+    }
+}
\ No newline at end of file
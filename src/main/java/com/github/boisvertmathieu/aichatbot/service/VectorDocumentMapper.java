@@ -0,0 +1,38 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import com.github.boisvertmathieu.aichatbot.entity.KnowledgeChunk;
+import com.github.boisvertmathieu.aichatbot.entity.KnowledgeDocument;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversion des passages de documents de connaissance en documents Spring AI pour le vector store
+ */
+@Component
+public class VectorDocumentMapper {
+    
+    public List<Document> toVectorDocuments(KnowledgeDocument document, List<KnowledgeChunk> chunks) {
+        return chunks.stream()
+            .map(chunk -> toVectorDocument(document, chunk))
+            .toList();
+    }
+    
+    private Document toVectorDocument(KnowledgeDocument document, KnowledgeChunk chunk) {
+        // "id" reste l'identifiant du document parent : c'est lui qui est rapporté dans retrievedDocumentIds
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("id", document.getDocumentId());
+        metadata.put("chunkId", chunk.getChunkId());
+        metadata.put("chunkIndex", chunk.getChunkIndex());
+        metadata.put("title", document.getTitle());
+        metadata.put("source", document.getSource());
+        metadata.put("tags", document.getTags());
+        metadata.put("created", document.getCreatedTimestamp().toString());
+        
+        // L'identifiant stable du passage permet de le remplacer lors d'une resynchronisation
+        return new Document(chunk.getChunkId(), chunk.getContent(), metadata);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,530 @@
+package com.github.boisvertmathieu.aichatbot.vectorstore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index HNSW (Hierarchical Navigable Small World) en mémoire sur des vecteurs normalisés.
+ * Les vecteurs sont stockés hors tas dans des pages de tampons directs de taille fixe ; la similarité est
+ * le produit scalaire (cosinus). La mise à jour d'un identifiant réutilise son nœud. Les suppressions sont
+ * des marqueurs : le nœud reste navigable mais n'est plus retourné, jusqu'à {@link #compact()}.
+ */
+public class HnswIndex {
+    
+    private static final int SNAPSHOT_MAGIC = 0x484E5357; // "HNSW"
+    private static final int SNAPSHOT_VERSION = 1;
+    
+    // Pages de vecteurs bien en deçà de la limite de 2 Go d'un tampon direct
+    private static final int MAX_NODES_PER_PAGE = 4096;
+    private static final long MAX_PAGE_BYTES = 64L * 1024 * 1024;
+    
+    private final int dimensions;
+    private final int m;
+    private final int maxConnectionsLevel0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int nodesPerPage;
+    
+    private FloatBuffer[] pages;
+    private String[] ids;
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private final Map<String, Integer> nodeById = new HashMap<>();
+    
+    private int size;
+    private int liveCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    
+    public HnswIndex(int dimensions, int m, int efConstruction, int initialCapacity) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxConnectionsLevel0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        
+        this.nodesPerPage = (int) Math.max(1, Math.min(MAX_NODES_PER_PAGE,
+                                                       MAX_PAGE_BYTES / ((long) dimensions * Float.BYTES)));
+        
+        int capacity = Math.max(16, initialCapacity);
+        this.pages = new FloatBuffer[0];
+        this.ids = new String[0];
+        this.links = new int[0][][];
+        ensureCapacity(capacity);
+    }
+    
+    public int dimensions() {
+        return dimensions;
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Part des nœuds supprimés encore présents dans le graphe
+     */
+    public double tombstoneRatio() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0 : (double) (size - liveCount) / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Ajoute ou remplace le vecteur associé à {@code id}
+     */
+    public void add(String id, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Dimension attendue " + dimensions + ", reçue " + vector.length);
+        }
+        
+        float[] normalized = normalize(vector);
+        
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodeById.get(id);
+            if (existing != null) {
+                update(existing, normalized);
+                return;
+            }
+            
+            ensureCapacity(size + 1);
+            
+            int node = size++;
+            int level = randomLevel();
+            
+            ids[node] = id;
+            writeVector(node, normalized);
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[0];
+            }
+            nodeById.put(id, node);
+            liveCount++;
+            
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+            
+            link(node, normalized, level);
+            
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Nouvel index construit à partir des seuls nœuds vivants, sans les marqueurs de suppression
+     */
+    public HnswIndex compact() {
+        lock.readLock().lock();
+        try {
+            HnswIndex compacted = new HnswIndex(dimensions, m, efConstruction, liveCount);
+            float[] vector = new float[dimensions];
+            for (int node = 0; node < size; node++) {
+                if (!deleted.get(node)) {
+                    readVector(node, vector);
+                    compacted.add(ids[node], vector);
+                }
+            }
+            return compacted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Retourne les {@code k} vecteurs les plus similaires, par similarité décroissante
+     */
+    public List<SearchResult> search(float[] query, int k, int ef) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Dimension attendue " + dimensions + ", reçue " + query.length);
+        }
+        
+        float[] normalized = normalize(query);
+        
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || liveCount == 0) {
+                return List.of();
+            }
+            
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            
+            // Les nœuds supprimés sont parcourus sans occuper de place parmi les résultats
+            return searchLayer(normalized, current, Math.max(ef, k), 0, true).stream()
+                .sorted(Comparator.comparingDouble(Candidate::score).reversed())
+                .limit(k)
+                .map(candidate -> new SearchResult(ids[candidate.node()], candidate.score()))
+                .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Écrit l'index dans un fichier, de façon atomique (fichier temporaire puis renommage)
+     */
+    public void save(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(dimensions);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            
+            for (int node = 0; node < size; node++) {
+                out.writeUTF(ids[node]);
+                out.writeBoolean(deleted.get(node));
+                out.writeInt(links[node].length);
+                for (int[] levelLinks : links[node]) {
+                    out.writeInt(levelLinks.length);
+                    for (int neighbor : levelLinks) {
+                        out.writeInt(neighbor);
+                    }
+                }
+                FloatBuffer page = page(node);
+                int base = offset(node);
+                for (int i = 0; i < dimensions; i++) {
+                    out.writeFloat(page.get(base + i));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    public static HnswIndex load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Format d'instantané HNSW non reconnu: " + path);
+            }
+            
+            int dimensions = in.readInt();
+            int m = in.readInt();
+            int efConstruction = in.readInt();
+            int size = in.readInt();
+            
+            HnswIndex index = new HnswIndex(dimensions, m, efConstruction, size);
+            index.size = size;
+            index.entryPoint = in.readInt();
+            index.maxLevel = in.readInt();
+            
+            float[] vector = new float[dimensions];
+            for (int node = 0; node < size; node++) {
+                index.ids[node] = in.readUTF();
+                boolean isDeleted = in.readBoolean();
+                
+                int levels = in.readInt();
+                index.links[node] = new int[levels][];
+                for (int l = 0; l < levels; l++) {
+                    int[] levelLinks = new int[in.readInt()];
+                    for (int i = 0; i < levelLinks.length; i++) {
+                        levelLinks[i] = in.readInt();
+                    }
+                    index.links[node][l] = levelLinks;
+                }
+                
+                for (int i = 0; i < dimensions; i++) {
+                    vector[i] = in.readFloat();
+                }
+                index.writeVector(node, vector);
+                
+                if (isDeleted) {
+                    index.deleted.set(node);
+                } else {
+                    index.nodeById.put(index.ids[node], node);
+                    index.liveCount++;
+                }
+            }
+            
+            return index;
+        }
+    }
+    
+    private boolean removeLocked(String id) {
+        Integer node = nodeById.remove(id);
+        if (node == null) {
+            return false;
+        }
+        deleted.set(node);
+        liveCount--;
+        return true;
+    }
+    
+    /**
+     * Remplace le vecteur d'un nœud existant et recalcule ses voisins, à son niveau d'origine
+     */
+    private void update(int node, float[] normalized) {
+        float[] current = new float[dimensions];
+        readVector(node, current);
+        if (Arrays.equals(current, normalized)) {
+            return;
+        }
+        
+        writeVector(node, normalized);
+        if (size > 1) {
+            link(node, normalized, links[node].length - 1);
+        }
+    }
+    
+    /**
+     * Choisit les voisins du nœud à chaque niveau, de {@code level} à 0, et l'ajoute aux leurs
+     */
+    private void link(int node, float[] normalized, int level) {
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(normalized, current, l);
+        }
+        
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(normalized, current, efConstruction, l, false);
+            int maxConnections = l == 0 ? maxConnectionsLevel0 : m;
+            
+            int[] selected = candidates.stream()
+                .filter(candidate -> candidate.node() != node)
+                .sorted(Comparator.comparingDouble(Candidate::score).reversed())
+                .limit(m)
+                .mapToInt(Candidate::node)
+                .toArray();
+            
+            links[node][l] = selected;
+            for (int neighbor : selected) {
+                connect(neighbor, node, l, maxConnections);
+            }
+            
+            current = candidates.stream().max(Comparator.comparingDouble(Candidate::score)).orElseThrow().node();
+        }
+    }
+    
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        double currentScore = similarity(query, current);
+        
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighbors(current, level)) {
+                double score = similarity(query, neighbor);
+                if (score > currentScore) {
+                    currentScore = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+    
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level, boolean liveOnly) {
+        BitSet visited = new BitSet(size);
+        visited.set(start);
+        
+        Candidate first = new Candidate(start, similarity(query, start));
+        
+        // Candidats à explorer (meilleur en tête) et meilleurs résultats trouvés (pire en tête)
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+        candidates.add(first);
+        if (!liveOnly || !deleted.get(start)) {
+            results.add(first);
+        }
+        
+        while (!candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) {
+                break;
+            }
+            
+            for (int neighbor : neighbors(candidate.node(), level)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                
+                double score = similarity(query, neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Candidate next = new Candidate(neighbor, score);
+                    candidates.add(next);
+                    if (!liveOnly || !deleted.get(neighbor)) {
+                        results.add(next);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        
+        return new ArrayList<>(results);
+    }
+    
+    private void connect(int node, int newNeighbor, int level, int maxConnections) {
+        int[] current = neighbors(node, level);
+        for (int neighbor : current) {
+            if (neighbor == newNeighbor) {
+                return;
+            }
+        }
+        
+        int[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = newNeighbor;
+        
+        if (updated.length > maxConnections) {
+            // Conserve les voisins les plus proches du nœud
+            float[] nodeVector = new float[dimensions];
+            readVector(node, nodeVector);
+            
+            updated = Arrays.stream(updated)
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer neighbor) -> similarity(nodeVector, neighbor)).reversed())
+                .limit(maxConnections)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        }
+        
+        links[node][level] = updated;
+    }
+    
+    private int[] neighbors(int node, int level) {
+        int[][] nodeLinks = links[node];
+        return level < nodeLinks.length ? nodeLinks[level] : new int[0];
+    }
+    
+    private double similarity(float[] query, int node) {
+        FloatBuffer page = page(node);
+        int base = offset(node);
+        double sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * page.get(base + i);
+        }
+        return sum;
+    }
+    
+    private FloatBuffer page(int node) {
+        return pages[node / nodesPerPage];
+    }
+    
+    private int offset(int node) {
+        return (node % nodesPerPage) * dimensions;
+    }
+    
+    private void readVector(int node, float[] target) {
+        page(node).get(offset(node), target);
+    }
+    
+    private void writeVector(int node, float[] vector) {
+        page(node).put(offset(node), vector);
+    }
+    
+    private int randomLevel() {
+        return (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+    
+    /**
+     * Ajoute des pages de vecteurs sans recopier les précédentes ; seuls les tableaux d'identifiants
+     * et de liens sont agrandis
+     */
+    private void ensureCapacity(int required) {
+        long capacity = (long) pages.length * nodesPerPage;
+        if (required <= capacity) {
+            return;
+        }
+        
+        int pageCount = (int) ((required + (long) nodesPerPage - 1) / nodesPerPage);
+        int grownPages = Math.max(pageCount, pages.length + (pages.length + 1) / 2);
+        
+        FloatBuffer[] grown = Arrays.copyOf(pages, grownPages);
+        for (int i = pages.length; i < grownPages; i++) {
+            grown[i] = ByteBuffer.allocateDirect(nodesPerPage * dimensions * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        }
+        pages = grown;
+        
+        int newCapacity = (int) Math.min(Integer.MAX_VALUE - 8, (long) grownPages * nodesPerPage);
+        ids = Arrays.copyOf(ids, newCapacity);
+        links = Arrays.copyOf(links, newCapacity);
+    }
+    
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+    
+    private record Candidate(int node, double score) {
+    }
+    
+    public record SearchResult(String id, double score) {
+    }
+}
\ No newline at end of file
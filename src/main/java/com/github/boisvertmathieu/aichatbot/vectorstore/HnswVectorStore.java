@@ -0,0 +1,321 @@
+package com.github.boisvertmathieu.aichatbot.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * VectorStore en processus, adossé à un {@link HnswIndex}. Les documents sont embarqués via le
+ * {@link EmbeddingModel} fourni et l'index peut être sauvegardé sur disque puis rechargé au démarrage,
+ * avec le point de reprise ({@code updated_timestamp}) jusqu'auquel il reflète {@code knowledge_documents}.
+ * Les filtres de métadonnées ne sont pas supportés.
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore {
+    
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+    
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final Path snapshotDirectory;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+    
+    // Sérialise les écritures et la compaction, qui remplace l'index ; les recherches ne le prennent pas
+    private final Object writeLock = new Object();
+    
+    private volatile HnswIndex index;
+    private volatile boolean dirty;
+    private volatile LocalDateTime watermark;
+    private volatile Instant reconciledAt;
+    
+    public HnswVectorStore(EmbeddingModel embeddingModel, ObjectMapper objectMapper, Path snapshotDirectory,
+                           int m, int efConstruction, int efSearch) {
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.snapshotDirectory = snapshotDirectory;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+    
+    @Override
+    public void add(List<Document> documentsToAdd) {
+        if (documentsToAdd.isEmpty()) {
+            return;
+        }
+        
+        List<float[]> vectors = embeddingModel.embed(documentsToAdd, EmbeddingOptionsBuilder.builder().build(),
+                                                     new TokenCountBatchingStrategy());
+        
+        synchronized (writeLock) {
+            HnswIndex target = indexFor(vectors.get(0).length);
+            for (int i = 0; i < documentsToAdd.size(); i++) {
+                Document document = documentsToAdd.get(i);
+                target.add(document.getId(), vectors.get(i));
+                documents.put(document.getId(), document);
+            }
+            
+            dirty = true;
+        }
+    }
+    
+    @Override
+    public void delete(List<String> idList) {
+        synchronized (writeLock) {
+            HnswIndex current = index;
+            for (String id : idList) {
+                documents.remove(id);
+                if (current != null) {
+                    current.remove(id);
+                }
+            }
+            dirty = true;
+        }
+    }
+    
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        throw new UnsupportedOperationException("Les filtres de métadonnées ne sont pas supportés par HnswVectorStore");
+    }
+    
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (request.hasFilterExpression()) {
+            throw new UnsupportedOperationException("Les filtres de métadonnées ne sont pas supportés par HnswVectorStore");
+        }
+        
+        HnswIndex current = index;
+        if (current == null) {
+            return List.of();
+        }
+        
+        float[] query = embeddingModel.embed(request.getQuery());
+        
+        return current.search(query, request.getTopK(), Math.max(efSearch, request.getTopK())).stream()
+            .filter(result -> result.score() >= request.getSimilarityThreshold())
+            .map(result -> {
+                Document document = documents.get(result.id());
+                if (document == null) {
+                    return null;
+                }
+                return Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(document.getMetadata())
+                    .score(result.score())
+                    .build();
+            })
+            .filter(document -> document != null)
+            .toList();
+    }
+    
+    @Override
+    public String getName() {
+        return "HnswVectorStore";
+    }
+    
+    public int size() {
+        HnswIndex current = index;
+        return current == null ? 0 : current.size();
+    }
+    
+    /**
+     * Identifiants des documents parents (métadonnée {@code id}) présents dans l'index
+     */
+    public Set<String> parentDocumentIds() {
+        return documents.values().stream()
+            .map(document -> String.valueOf(document.getMetadata().get("id")))
+            .collect(Collectors.toSet());
+    }
+    
+    /**
+     * Identifiants des passages indexés pour les documents parents donnés
+     */
+    public List<String> chunkIdsOf(Collection<String> parentDocumentIds) {
+        Set<String> parents = parentDocumentIds instanceof Set<String> set ? set : new HashSet<>(parentDocumentIds);
+        return documents.values().stream()
+            .filter(document -> parents.contains(String.valueOf(document.getMetadata().get("id"))))
+            .map(Document::getId)
+            .toList();
+    }
+    
+    /**
+     * Dernier {@code updated_timestamp} de {@code knowledge_documents} reflété par l'index, ou {@code null}
+     */
+    public LocalDateTime watermark() {
+        return watermark;
+    }
+    
+    /**
+     * Enregistre la fin d'une réconciliation avec la base, jusqu'à {@code reconciledUpTo} inclus
+     */
+    public void markReconciled(LocalDateTime reconciledUpTo) {
+        if (reconciledUpTo != null && (watermark == null || reconciledUpTo.isAfter(watermark))) {
+            watermark = reconciledUpTo;
+            dirty = true;
+        }
+        reconciledAt = Instant.now();
+    }
+    
+    /**
+     * Vrai si l'index a été réconcilié avec la base depuis moins de {@code maxStaleness}
+     */
+    public boolean isReconciledWithin(Duration maxStaleness) {
+        Instant last = reconciledAt;
+        return last != null && last.plus(maxStaleness).isAfter(Instant.now());
+    }
+    
+    /**
+     * Reconstruit l'index sans ses nœuds supprimés dès qu'ils dépassent {@code maxTombstoneRatio}
+     */
+    public void compactIfNeeded(double maxTombstoneRatio) {
+        synchronized (writeLock) {
+            HnswIndex current = index;
+            if (current == null || current.tombstoneRatio() <= maxTombstoneRatio) {
+                return;
+            }
+            
+            double ratio = current.tombstoneRatio();
+            index = current.compact();
+            dirty = true;
+            
+            log.info("Index HNSW compacté: {} nœuds vivants, {}% de nœuds supprimés retirés",
+                     current.size(), Math.round(ratio * 100));
+        }
+    }
+    
+    /**
+     * Sauvegarde l'index et les documents si des modifications ont eu lieu depuis la dernière sauvegarde
+     */
+    public synchronized void snapshot() {
+        HnswIndex current = index;
+        if (!dirty || current == null) {
+            return;
+        }
+        
+        // Lu avant l'index : l'instantané reflète au moins tout ce qui précède ce point de reprise
+        LocalDateTime savedWatermark = watermark;
+        
+        try {
+            Files.createDirectories(snapshotDirectory);
+            dirty = false;
+            
+            current.save(snapshotDirectory.resolve("index.hnsw"));
+            
+            Path documentsFile = snapshotDirectory.resolve("documents.ndjson");
+            Path tmp = snapshotDirectory.resolve("documents.ndjson.tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Document document : documents.values()) {
+                    writer.write(objectMapper.writeValueAsString(Map.of(
+                        "id", document.getId(),
+                        "text", document.getText(),
+                        "metadata", document.getMetadata())));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, documentsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            Path watermarkFile = snapshotDirectory.resolve("watermark");
+            if (savedWatermark != null) {
+                Path watermarkTmp = snapshotDirectory.resolve("watermark.tmp");
+                Files.writeString(watermarkTmp, savedWatermark.toString(), StandardCharsets.UTF_8);
+                Files.move(watermarkTmp, watermarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(watermarkFile);
+            }
+            
+            log.info("Instantané HNSW sauvegardé ({} documents) dans {}", documents.size(), snapshotDirectory);
+        
+        } catch (IOException e) {
+            dirty = true;
+            log.error("Erreur lors de la sauvegarde de l'instantané HNSW: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Recharge le dernier instantané s'il existe. Retourne {@code true} si un index a été chargé
+     */
+    public synchronized boolean loadSnapshot() {
+        Path indexFile = snapshotDirectory.resolve("index.hnsw");
+        Path documentsFile = snapshotDirectory.resolve("documents.ndjson");
+        
+        if (!Files.exists(indexFile) || !Files.exists(documentsFile)) {
+            return false;
+        }
+        
+        try (BufferedReader reader = Files.newBufferedReader(documentsFile, StandardCharsets.UTF_8)) {
+            HnswIndex loaded = HnswIndex.load(indexFile);
+            
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map<String, Object> entry = objectMapper.readValue(line, METADATA_TYPE);
+                @SuppressWarnings("unchecked")
+                Map<String, Object> metadata = (Map<String, Object>) entry.get("metadata");
+                String id = (String) entry.get("id");
+                documents.put(id, new Document(id, (String) entry.get("text"), metadata));
+            }
+            
+            Path watermarkFile = snapshotDirectory.resolve("watermark");
+            // Instantané sans point de reprise : la réconciliation suivante compare toute la base
+            watermark = Files.exists(watermarkFile)
+                ? LocalDateTime.parse(Files.readString(watermarkFile, StandardCharsets.UTF_8).trim())
+                : null;
+            
+            index = loaded;
+            dirty = false;
+            
+            log.info("Instantané HNSW chargé: {} documents", loaded.size());
+            return true;
+        
+        } catch (IOException | DateTimeParseException e) {
+            log.error("Instantané HNSW illisible, l'index sera reconstruit: {}", e.getMessage(), e);
+            documents.clear();
+            return false;
+        }
+    }
+    
+    private HnswIndex indexFor(int dimensions) {
+        HnswIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    current = new HnswIndex(dimensions, m, efConstruction, 1024);
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+}
\ No newline at end of file
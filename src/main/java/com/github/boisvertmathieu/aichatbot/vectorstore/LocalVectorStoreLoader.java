@@ -0,0 +1,164 @@
+package com.github.boisvertmathieu.aichatbot.vectorstore;
+
+import com.github.boisvertmathieu.aichatbot.entity.KnowledgeDocument;
+import com.github.boisvertmathieu.aichatbot.repository.KnowledgeDocumentRepository;
+import com.github.boisvertmathieu.aichatbot.service.KnowledgeChunkService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Alimente le {@link HnswVectorStore} au démarrage : depuis l'instantané disque s'il existe,
+ * sinon depuis les passages de la table {@code knowledge_chunks}. Sauvegarde ensuite périodiquement l'index.
+ * <p>
+ * Les synchronisations et imports ne s'exécutent que sur un nœud : chaque nœud réconcilie donc son index
+ * avec {@code knowledge_documents}, au démarrage puis périodiquement. Les documents modifiés depuis le point
+ * de reprise de l'index ({@code updated_timestamp}, avec une marge pour les transactions validées en retard)
+ * sont rechargés, et ceux supprimés de la base sont retirés.
+ */
+@Component
+@Profile({"local-vector", "hot-tier"})
+@RequiredArgsConstructor
+@Slf4j
+public class LocalVectorStoreLoader {
+    
+    private static final int PAGE_SIZE = 500;
+    private static final LocalDateTime INITIAL_WATERMARK = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
+    private final HnswVectorStore hnswVectorStore;
+    private final KnowledgeDocumentRepository knowledgeDocumentRepository;
+    private final KnowledgeChunkService knowledgeChunkService;
+    
+    @Value("${chatbot.vector-store.local.reconcile-overlap:PT5M}")
+    private Duration reconcileOverlap;
+    
+    @Value("${chatbot.vector-store.local.max-tombstone-ratio:0.2}")
+    private double maxTombstoneRatio;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (hnswVectorStore.loadSnapshot()) {
+            reconcile();
+            return;
+        }
+        
+        log.info("Aucun instantané HNSW, chargement depuis knowledge_documents");
+        
+        long loaded = 0;
+        LocalDateTime latestUpdate = null;
+        Page<KnowledgeDocument> page;
+        int pageNumber = 0;
+        
+        do {
+            page = knowledgeDocumentRepository.findAll(PageRequest.of(pageNumber++, PAGE_SIZE, Sort.by("id")));
+            if (page.hasContent()) {
+                hnswVectorStore.add(knowledgeChunkService.loadVectorDocuments(page.getContent()));
+                loaded += page.getNumberOfElements();
+                latestUpdate = latest(latestUpdate, page.getContent());
+            }
+        } while (page.hasNext());
+        
+        hnswVectorStore.markReconciled(latestUpdate);
+        
+        log.info("Index HNSW chargé: {} documents", loaded);
+        
+        hnswVectorStore.snapshot();
+    }
+    
+    /**
+     * Recharge les documents modifiés depuis le point de reprise de l'index et retire ceux supprimés de la base
+     */
+    @Scheduled(initialDelayString = "${chatbot.vector-store.local.reconcile-interval-ms:300000}",
+               fixedDelayString = "${chatbot.vector-store.local.reconcile-interval-ms:300000}")
+    public synchronized void reconcile() {
+        try {
+            LocalDateTime watermark = hnswVectorStore.watermark();
+            LocalDateTime since = watermark == null ? INITIAL_WATERMARK : watermark.minus(reconcileOverlap);
+            LocalDateTime latestUpdate = watermark;
+            
+            long refreshed = 0;
+            long removed = 0;
+            int pageNumber = 0;
+            Slice<KnowledgeDocument> page;
+            
+            do {
+                page = knowledgeDocumentRepository.findByUpdatedTimestampAfter(
+                    since, PageRequest.of(pageNumber++, PAGE_SIZE, Sort.by("id")));
+                if (!page.hasContent()) {
+                    break;
+                }
+                
+                List<Document> vectorDocuments = knowledgeChunkService.loadVectorDocuments(page.getContent());
+                
+                // Passages disparus des documents modifiés (document raccourci ou redécoupé)
+                Set<String> currentChunkIds = vectorDocuments.stream().map(Document::getId).collect(Collectors.toSet());
+                List<String> staleChunkIds = hnswVectorStore.chunkIdsOf(
+                        page.getContent().stream().map(KnowledgeDocument::getDocumentId).toList()).stream()
+                    .filter(chunkId -> !currentChunkIds.contains(chunkId))
+                    .toList();
+                
+                hnswVectorStore.add(vectorDocuments);
+                if (!staleChunkIds.isEmpty()) {
+                    hnswVectorStore.delete(staleChunkIds);
+                }
+                
+                refreshed += page.getNumberOfElements();
+                removed += staleChunkIds.size();
+                latestUpdate = latest(latestUpdate, page.getContent());
+            } while (page.hasNext());
+            
+            // Documents supprimés de la base : aucune trace dans updated_timestamp, comparaison des identifiants
+            Set<String> deletedDocumentIds = new HashSet<>(hnswVectorStore.parentDocumentIds());
+            deletedDocumentIds.removeAll(knowledgeDocumentRepository.findAllDocumentIds());
+            if (!deletedDocumentIds.isEmpty()) {
+                List<String> deletedChunkIds = hnswVectorStore.chunkIdsOf(deletedDocumentIds);
+                hnswVectorStore.delete(deletedChunkIds);
+                removed += deletedChunkIds.size();
+            }
+            
+            hnswVectorStore.compactIfNeeded(maxTombstoneRatio);
+            hnswVectorStore.markReconciled(latestUpdate);
+            
+            if (refreshed > 0 || removed > 0) {
+                log.info("Index HNSW réconcilié: {} documents rechargés, {} passages retirés", refreshed, removed);
+            }
+        
+        } catch (Exception e) {
+            // Le niveau chaud n'est plus considéré à jour : les recherches retombent sur le store distant
+            log.error("Erreur lors de la réconciliation de l'index HNSW: {}", e.getMessage(), e);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${chatbot.vector-store.local.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        hnswVectorStore.snapshot();
+    }
+    
+    private static LocalDateTime latest(LocalDateTime current, List<KnowledgeDocument> documents) {
+        LocalDateTime latest = current;
+        for (KnowledgeDocument document : documents) {
+            LocalDateTime updated = document.getUpdatedTimestamp();
+            if (updated != null && (latest == null || updated.isAfter(latest))) {
+                latest = updated;
+            }
+        }
+        return latest;
+    }
+}
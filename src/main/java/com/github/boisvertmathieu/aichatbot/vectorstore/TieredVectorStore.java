@@ -0,0 +1,61 @@
+package com.github.boisvertmathieu.aichatbot.vectorstore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * VectorStore à deux niveaux : les écritures vont au store distant (source de vérité) puis au
+ * niveau chaud en processus ; les recherches sont servies par le niveau chaud tant qu'il a été réconcilié
+ * avec la base depuis moins de {@code maxStaleness}, et retombent sur le store distant sinon
+ * (avant la première réconciliation, après un échec, ou pour les requêtes filtrées).
+ */
+@Slf4j
+public class TieredVectorStore implements VectorStore {
+    
+    private final HnswVectorStore hotTier;
+    private final VectorStore remote;
+    private final Duration maxStaleness;
+    
+    public TieredVectorStore(HnswVectorStore hotTier, VectorStore remote, Duration maxStaleness) {
+        this.hotTier = hotTier;
+        this.remote = remote;
+        this.maxStaleness = maxStaleness;
+    }
+    
+    @Override
+    public void add(List<Document> documents) {
+        remote.add(documents);
+        hotTier.add(documents);
+    }
+    
+    @Override
+    public void delete(List<String> idList) {
+        remote.delete(idList);
+        hotTier.delete(idList);
+    }
+    
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        // Le niveau chaud sera resynchronisé au prochain chargement
+        remote.delete(filterExpression);
+    }
+    
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (request.hasFilterExpression() || hotTier.size() == 0 || !hotTier.isReconciledWithin(maxStaleness)) {
+            return remote.similaritySearch(request);
+        }
+        return hotTier.similaritySearch(request);
+    }
+    
+    @Override
+    public String getName() {
+        return "TieredVectorStore";
+    }
+}
\ No newline at end of file
@@ -64,6 +64,21 @@ class ChatControllerTest {
                 .andExpect(status().isBadRequest());
     }
     
+    @Test
+    void chatStreamEndpointShouldRejectInvalidRequest() throws Exception {
+        ChatRequest request = ChatRequest.builder()
+                .conversationId("test-conv-123")
+                .userId("test-user")
+                .text("") // text vide
+                .build();
+        
+        mockMvc.perform(post("/api/chat/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+    
     @Test
     void feedbackEndpointShouldAcceptValidRequest() throws Exception {
         FeedbackRequest request = FeedbackRequest.builder()
@@ -0,0 +1,100 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextAssemblerTest {
+    
+    private static final String LONG_TEXT = "Spring Boot simplifie la configuration. ".repeat(200);
+    
+    @Test
+    void assembleShouldStayWithinTokenBudget() {
+        ContextAssembler assembler = new ContextAssembler(300, 20);
+        
+        ContextAssembler.AssembledContext context = assembler.assemble("Comment configurer Spring Boot ?", List.of(
+            document("doc-1", LONG_TEXT, 0.9),
+            document("doc-2", LONG_TEXT + " suite", 0.8)));
+        
+        assertThat(context.totalTokens()).isLessThanOrEqualTo(300);
+        assertThat(new JTokkitTokenCountEstimator().estimate(context.prompt())).isLessThanOrEqualTo(310);
+        assertThat(context.sections().get(0).truncated()).isTrue();
+        assertThat(context.prompt()).endsWith("Question: Comment configurer Spring Boot ?");
+    }
+    
+    @Test
+    void assembleShouldTruncateAtSentenceBoundary() {
+        ContextAssembler assembler = new ContextAssembler(120, 10);
+        
+        ContextAssembler.AssembledContext context = assembler.assemble("Question ?", List.of(
+            document("doc-1", LONG_TEXT, 0.9)));
+        
+        String passage = context.prompt().lines()
+            .filter(line -> line.startsWith("[Doc 1]"))
+            .findFirst()
+            .orElseThrow();
+        assertThat(passage).endsWith(".");
+    }
+    
+    @Test
+    void assembleShouldOrderByScoreAndDropDuplicates() {
+        ContextAssembler assembler = new ContextAssembler(1000, 20);
+        
+        ContextAssembler.AssembledContext context = assembler.assemble("Question ?", List.of(
+            document("doc-low", "Passage peu pertinent.", 0.5),
+            document("doc-high", "Passage très pertinent.", 0.95),
+            document("doc-copy", "  passage TRÈS pertinent. ", 0.9)));
+        
+        assertThat(context.documents()).extracting(Document::getId).containsExactly("doc-high", "doc-low");
+        assertThat(context.droppedCount()).isEqualTo(1);
+        assertThat(context.prompt()).startsWith(ContextAssembler.CONTEXT_HEADER + "[Doc 1] Passage très pertinent.");
+    }
+    
+    @Test
+    void assembleShouldDeductHistoryFromBudget() {
+        ContextAssembler assembler = new ContextAssembler(600, 20);
+        List<Document> documents = List.of(document("doc-1", LONG_TEXT, 0.9));
+        List<Message> history = List.of(
+            new SystemMessage("Tu es un assistant."),
+            new UserMessage("Spring Boot simplifie-t-il la configuration ? ".repeat(20)),
+            new AssistantMessage("Oui, Spring Boot simplifie la configuration. ".repeat(20)));
+        int historyTokens = assembler.estimateTokens(history);
+        
+        ContextAssembler.AssembledContext withoutHistory = assembler.assemble("Question ?", documents);
+        ContextAssembler.AssembledContext withHistory = assembler.assemble("Question ?", documents, historyTokens);
+        
+        assertThat(historyTokens).isGreaterThan(100);
+        assertThat(withHistory.totalTokens()).isLessThanOrEqualTo(600);
+        assertThat(withHistory.sections().get(0).tokens())
+            .isLessThan(withoutHistory.sections().get(0).tokens());
+        assertThat(withHistory.sections()).extracting(ContextAssembler.SectionUsage::section).contains("Historique");
+    }
+    
+    @Test
+    void assembleWithoutDocumentsShouldOnlyContainQuestion() {
+        ContextAssembler assembler = new ContextAssembler(1000, 20);
+        
+        ContextAssembler.AssembledContext context = assembler.assemble("Question ?", List.of());
+        
+        assertThat(context.prompt()).isEqualTo("Question: Question ?");
+        assertThat(context.sections()).hasSize(1);
+    }
+    
+    private static Document document(String id, String text, double score) {
+        return Document.builder()
+            .id(id)
+            .text(text)
+            .metadata(Map.of("id", id))
+            .score(score)
+            .build();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocumentChunkerTest {
+    
+    private static final String SENTENCES = "Spring Boot simplifie la configuration des applications. ".repeat(40);
+    
+    @Test
+    void splitShouldReturnNothingForBlankText() {
+        DocumentChunker chunker = new DocumentChunker(100, 20);
+        
+        assertThat(chunker.split(null)).isEmpty();
+        assertThat(chunker.split("  \n\t ")).isEmpty();
+    }
+    
+    @Test
+    void splitShouldKeepTinyTextAsSingleChunk() {
+        DocumentChunker chunker = new DocumentChunker(100, 20);
+        
+        List<DocumentChunker.TextChunk> chunks = chunker.split("  Une phrase courte.  ");
+        
+        assertThat(chunks).singleElement().satisfies(chunk -> {
+            assertThat(chunk.index()).isZero();
+            assertThat(chunk.content()).isEqualTo("Une phrase courte.");
+            assertThat(chunk.startOffset()).isEqualTo(2);
+        });
+    }
+    
+    @Test
+    void splitShouldCutAtSentenceBoundaries() {
+        DocumentChunker chunker = new DocumentChunker(200, 40);
+        
+        List<DocumentChunker.TextChunk> chunks = chunker.split(SENTENCES);
+        
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat(chunk.content().length()).isLessThanOrEqualTo(200);
+            assertThat(chunk.content()).endsWith(".");
+        });
+    }
+    
+    @Test
+    void splitShouldPreferParagraphBreaks() {
+        DocumentChunker chunker = new DocumentChunker(200, 40);
+        String firstParagraph = "Premier paragraphe sur la configuration. ".repeat(3).strip();
+        
+        List<DocumentChunker.TextChunk> chunks = chunker.split(
+            firstParagraph + "\n\n" + "Second paragraphe sur le déploiement. ".repeat(5));
+        
+        assertThat(chunks.get(0).content()).isEqualTo(firstParagraph);
+    }
+    
+    @Test
+    void consecutiveChunksShouldOverlapOnWholeWords() {
+        DocumentChunker chunker = new DocumentChunker(200, 40);
+        
+        List<DocumentChunker.TextChunk> chunks = chunker.split(SENTENCES);
+        
+        for (int i = 1; i < chunks.size(); i++) {
+            DocumentChunker.TextChunk previous = chunks.get(i - 1);
+            DocumentChunker.TextChunk current = chunks.get(i);
+            
+            assertThat(current.index()).isEqualTo(i);
+            assertThat(current.startOffset()).isLessThan(previous.endOffset());
+            assertThat(current.startOffset()).isGreaterThan(previous.startOffset());
+            assertThat(SENTENCES.charAt(current.startOffset() - 1)).isWhitespace();
+        }
+    }
+    
+    @Test
+    void chunksShouldCoverTheWholeText() {
+        DocumentChunker chunker = new DocumentChunker(200, 40);
+        
+        List<DocumentChunker.TextChunk> chunks = chunker.split(SENTENCES);
+        
+        assertThat(chunks.get(0).startOffset()).isZero();
+        assertThat(chunks.get(chunks.size() - 1).endOffset()).isEqualTo(SENTENCES.length());
+        for (int i = 1; i < chunks.size(); i++) {
+            assertThat(chunks.get(i).startOffset()).isLessThanOrEqualTo(chunks.get(i - 1).endOffset());
+        }
+    }
+    
+    @Test
+    void splitShouldAdvanceThroughTextWithoutWhitespace() {
+        DocumentChunker chunker = new DocumentChunker(100, 20);
+        String token = "x".repeat(100_000);
+        
+        List<DocumentChunker.TextChunk> chunks = chunker.split(token);
+        
+        // Coupures franches : chaque passage avance de max-chars moins le chevauchement
+        assertThat(chunks).hasSize(1250);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.content().length()).isLessThanOrEqualTo(100));
+        assertThat(chunks.get(1).startOffset()).isEqualTo(80);
+        assertThat(chunks.get(chunks.size() - 1).endOffset()).isEqualTo(token.length());
+    }
+    
+    @Test
+    void splitShouldHandleLargeDocuments() {
+        DocumentChunker chunker = new DocumentChunker(1200, 200);
+        String text = SENTENCES.repeat(500);
+        
+        List<DocumentChunker.TextChunk> chunks = chunker.split(text);
+        
+        assertThat(chunks).hasSizeBetween(text.length() / 1200, text.length() / 600);
+        assertThat(chunks.get(chunks.size() - 1).endOffset()).isEqualTo(text.length());
+    }
+    
+    @Test
+    void overlapMustBeSmallerThanChunkSize() {
+        assertThatThrownBy(() -> new DocumentChunker(100, 100)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HybridRetrieverTest {
+    
+    private static final int RRF_K = 60;
+    
+    @Test
+    void fuseShouldRankPassagesFoundByBothSearchesFirst() {
+        List<Document> fused = HybridRetriever.fuse(
+            List.of(document("a"), document("b"), document("c")),
+            List.of(document("c"), document("d")),
+            RRF_K, 0.0, 5);
+        
+        assertThat(fused).extracting(Document::getId).containsExactly("c", "a", "b", "d");
+        assertThat(fused.get(0).getScore()).isCloseTo(1.0 / 63 + 1.0 / 61, within(1e-9));
+        assertThat(fused.get(1).getScore()).isCloseTo(1.0 / 61, within(1e-9));
+    }
+    
+    @Test
+    void fuseShouldKeepVectorMetadataAndLimitResults() {
+        Document vector = new Document("a", "Passage", Map.of("id", "doc-a", "source", "vector"));
+        Document lexical = new Document("a", "Passage", Map.of("id", "doc-a", "source", "lexical"));
+        
+        List<Document> fused = HybridRetriever.fuse(
+            List.of(vector, document("b"), document("c")),
+            List.of(lexical),
+            RRF_K, 0.0, 2);
+        
+        assertThat(fused).extracting(Document::getId).containsExactly("a", "b");
+        assertThat(fused.get(0).getMetadata()).containsEntry("source", "vector");
+    }
+    
+    @Test
+    void fuseShouldDropLexicalOnlyHitsBelowMinimumScore() {
+        List<Document> fused = HybridRetriever.fuse(
+            List.of(document("a"), document("b"), document("c"), document("e")),
+            List.of(document("d"), document("f"), document("g")),
+            RRF_K, 0.016, 10);
+        
+        // Les passages vectoriels ont passé le seuil de similarité ; seuls les deux premiers rangs BM25 atteignent 0.016
+        assertThat(fused).extracting(Document::getId).containsExactly("a", "d", "b", "f", "c", "e");
+    }
+    
+    @Test
+    void fuseWithoutResultsShouldBeEmpty() {
+        assertThat(HybridRetriever.fuse(List.of(), List.of(), RRF_K, 0.016, 5)).isEmpty();
+    }
+    
+    private static Document document(String id) {
+        return new Document(id, "Passage " + id, Map.of("id", id));
+    }
+}
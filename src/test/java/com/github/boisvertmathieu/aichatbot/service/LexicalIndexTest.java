@@ -0,0 +1,103 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LexicalIndexTest {
+    
+    private final LexicalIndex index = new LexicalIndex();
+    
+    @Test
+    void searchShouldRankRareExactTermFirst() {
+        index.upsert(List.of(
+            passage("doc-1-chunk-0", "doc-1", "Configurer la datasource Spring Boot avec spring.datasource.url."),
+            passage("doc-2-chunk-0", "doc-2", "Spring Boot démarre un serveur Tomcat embarqué."),
+            passage("doc-3-chunk-0", "doc-3", "Spring Boot Actuator expose les métriques.")));
+        
+        List<Document> results = index.search("spring.datasource.url", 3);
+        
+        assertThat(results).extracting(Document::getId).first().isEqualTo("doc-1-chunk-0");
+        assertThat(results.get(0).getScore()).isPositive();
+    }
+    
+    @Test
+    void searchShouldIgnoreCaseAndAccents() {
+        index.upsert(List.of(
+            passage("doc-1-chunk-0", "doc-1", "Les métriques sont exposées par Actuator."),
+            passage("doc-2-chunk-0", "doc-2", "Le serveur démarre sur le port 8080.")));
+        
+        assertThat(index.search("METRIQUES", 5)).extracting(Document::getId).containsExactly("doc-1-chunk-0");
+    }
+    
+    @Test
+    void searchShouldMatchCompoundTokenParts() {
+        index.upsert(List.of(
+            passage("doc-1-chunk-0", "doc-1", "Erreur HTTP-404 lors de l'appel."),
+            passage("doc-2-chunk-0", "doc-2", "Le service répond correctement.")));
+        
+        assertThat(index.search("404", 5)).extracting(Document::getId).containsExactly("doc-1-chunk-0");
+        assertThat(index.search("http-404", 5)).extracting(Document::getId).containsExactly("doc-1-chunk-0");
+    }
+    
+    @Test
+    void searchShouldPreferShorterPassageForSameFrequency() {
+        index.upsert(List.of(
+            passage("short", "doc-1", "Timeout Hikari."),
+            passage("long", "doc-2", "Timeout Hikari lors du démarrage de l'application, après plusieurs tentatives "
+                + "de connexion à la base de données configurée dans le fichier de propriétés.")));
+        
+        assertThat(index.search("hikari", 2)).extracting(Document::getId).containsExactly("short", "long");
+    }
+    
+    @Test
+    void upsertShouldReplaceAndRemoveShouldForgetPassage() {
+        index.upsert(List.of(passage("doc-1-chunk-0", "doc-1", "Ancien contenu kafka.")));
+        index.upsert(List.of(passage("doc-1-chunk-0", "doc-1", "Nouveau contenu rabbitmq.")));
+        
+        assertThat(index.search("kafka", 5)).isEmpty();
+        assertThat(index.search("rabbitmq", 5)).hasSize(1);
+        
+        index.remove(List.of("doc-1-chunk-0"));
+        
+        assertThat(index.search("rabbitmq", 5)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+    
+    @Test
+    void reloadShouldNotOverwritePassagesUpdatedDuringTheRead() {
+        index.upsert(List.of(passage("doc-1-chunk-0", "doc-1", "Version initiale kafka.")));
+        
+        index.reload(() -> {
+            // Lecture en base de l'ancienne version, pendant qu'une indexation valide la nouvelle
+            List<Document> staleRead = List.of(
+                passage("doc-1-chunk-0", "doc-1", "Version initiale kafka."),
+                passage("doc-2-chunk-0", "doc-2", "Passage redis."));
+            index.upsert(List.of(passage("doc-1-chunk-0", "doc-1", "Version corrigée rabbitmq.")));
+            return new LexicalIndex.Changes(staleRead, List.of());
+        });
+        
+        assertThat(index.search("rabbitmq", 5)).extracting(Document::getId).containsExactly("doc-1-chunk-0");
+        assertThat(index.search("kafka", 5)).isEmpty();
+        assertThat(index.search("redis", 5)).extracting(Document::getId).containsExactly("doc-2-chunk-0");
+    }
+    
+    @Test
+    void chunkIdsOfShouldGroupPassagesByParentDocument() {
+        index.upsert(List.of(
+            passage("doc-1-chunk-0", "doc-1", "Premier passage."),
+            passage("doc-1-chunk-1", "doc-1", "Second passage."),
+            passage("doc-2-chunk-0", "doc-2", "Autre document.")));
+        
+        assertThat(index.parentDocumentIds()).containsExactlyInAnyOrder("doc-1", "doc-2");
+        assertThat(index.chunkIdsOf(List.of("doc-1"))).containsExactlyInAnyOrder("doc-1-chunk-0", "doc-1-chunk-1");
+    }
+    
+    private static Document passage(String chunkId, String documentId, String text) {
+        return new Document(chunkId, text, Map.of("id", documentId, "title", ""));
+    }
+}
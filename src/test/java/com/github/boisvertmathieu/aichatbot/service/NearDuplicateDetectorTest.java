@@ -0,0 +1,58 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NearDuplicateDetectorTest {
+    
+    private static final String CORRECTION = "Question: Comment réinitialiser mon mot de passe du portail client ?\n" +
+        "Réponse: Ouvrez la page de connexion, cliquez sur « Mot de passe oublié », saisissez votre adresse " +
+        "courriel professionnelle puis suivez le lien reçu. Le lien expire après 30 minutes.";
+    
+    private final NearDuplicateDetector detector = new NearDuplicateDetector(0.8);
+    
+    @Test
+    void similarityShouldIgnoreCaseAndPunctuation() {
+        String rephrased = CORRECTION.replace("Le lien expire après 30 minutes.", "Le lien expire après 30 minutes !")
+            .replace("Comment", "comment");
+        
+        assertThat(NearDuplicateDetector.similarity(detector.signature(CORRECTION), detector.signature(rephrased)))
+            .isEqualTo(1.0);
+    }
+    
+    @Test
+    void indexShouldFindNearDuplicate() {
+        NearDuplicateDetector.Index index = detector.newIndex();
+        index.put("corrected_conv-1", detector.signature(CORRECTION));
+        index.put("corrected_conv-2", detector.signature(
+            "Question: Quels sont les délais de livraison ?\nRéponse: Les commandes sont livrées sous 3 à 5 jours ouvrables."));
+        
+        String nearDuplicate = CORRECTION + " Pensez à vérifier vos indésirables.";
+        
+        assertThat(index.findDuplicate(detector.signature(nearDuplicate)))
+            .hasValueSatisfying(match -> {
+                assertThat(match.documentId()).isEqualTo("corrected_conv-1");
+                assertThat(match.similarity()).isGreaterThanOrEqualTo(0.8);
+            });
+    }
+    
+    @Test
+    void indexShouldIgnoreDistinctContent() {
+        NearDuplicateDetector.Index index = detector.newIndex();
+        index.put("corrected_conv-1", detector.signature(CORRECTION));
+        
+        String distinct = "Question: Comment exporter mes factures ?\n" +
+            "Réponse: Dans l'onglet Facturation, choisissez la période puis cliquez sur Exporter en PDF.";
+        
+        assertThat(index.findDuplicate(detector.signature(distinct))).isEmpty();
+    }
+    
+    @Test
+    void encodedSignatureShouldRoundTrip() {
+        int[] signature = detector.signature(CORRECTION);
+        
+        assertThat(NearDuplicateDetector.decode(NearDuplicateDetector.encode(signature))).containsExactly(signature);
+        assertThat(NearDuplicateDetector.decode("AAAA")).isNull();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.github.boisvertmathieu.aichatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+    
+    private static final Duration MAX_WAIT = Duration.ofSeconds(10);
+    private static final int CALLERS = 8;
+    
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    
+    @Test
+    void concurrentCallersShouldShareOneInvocation() throws Exception {
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("question", MAX_WAIT, () -> {
+                invocations.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return "réponse";
+            }));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            
+            List<Future<SingleFlight.Result<String>>> followers = new ArrayList<>();
+            for (int i = 1; i < CALLERS; i++) {
+                followers.add(executor.submit(() -> singleFlight.execute("question", MAX_WAIT, () -> {
+                    invocations.incrementAndGet();
+                    return "autre réponse";
+                })));
+            }
+            letFollowersSubscribe();
+            release.countDown();
+            
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result<>("réponse", false));
+            for (Future<SingleFlight.Result<String>> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS).value()).isEqualTo("réponse");
+            }
+        }
+        
+        assertThat(invocations).hasValue(1);
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+    
+    @Test
+    void followersShouldReceiveLeaderException() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("question", MAX_WAIT, () -> {
+                leaderStarted.countDown();
+                await(release);
+                throw new IllegalStateException("Azure OpenAI indisponible");
+            }));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            
+            Future<SingleFlight.Result<String>> follower = executor.submit(
+                () -> singleFlight.execute("question", MAX_WAIT, () -> "autre réponse"));
+            letFollowersSubscribe();
+            assertThat(follower.isDone()).isFalse();
+            release.countDown();
+            
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Azure OpenAI indisponible");
+        }
+        
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+    
+    @Test
+    void keyShouldBeReleasedOnceResultIsPublished() {
+        AtomicInteger invocations = new AtomicInteger();
+        
+        SingleFlight.Result<String> first = singleFlight.execute("question", MAX_WAIT, () -> "v" + invocations.incrementAndGet());
+        SingleFlight.Result<String> second = singleFlight.execute("question", MAX_WAIT, () -> "v" + invocations.incrementAndGet());
+        
+        assertThat(first).isEqualTo(new SingleFlight.Result<>("v1", false));
+        assertThat(second).isEqualTo(new SingleFlight.Result<>("v2", false));
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+    
+    @Test
+    void followerShouldComputeItselfWhenLeaderHangs() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("question", MAX_WAIT, () -> {
+                leaderStarted.countDown();
+                await(release);
+                return "réponse tardive";
+            }));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            
+            SingleFlight.Result<String> follower = singleFlight.execute("question", Duration.ofMillis(50), () -> "réponse");
+            
+            assertThat(follower).isEqualTo(new SingleFlight.Result<>("réponse", false));
+            
+            // Le délai du suivant ne fait pas échouer l'appel du premier
+            release.countDown();
+            assertThat(leader.get(5, TimeUnit.SECONDS).value()).isEqualTo("réponse tardive");
+        }
+    }
+    
+    /**
+     * Laisse aux suivants le temps de trouver l'appel en cours et de s'y abonner
+     */
+    private static void letFollowersSubscribe() throws InterruptedException {
+        Thread.sleep(200);
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
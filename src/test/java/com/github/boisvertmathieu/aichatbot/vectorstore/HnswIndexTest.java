@@ -0,0 +1,166 @@
+package com.github.boisvertmathieu.aichatbot.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HnswIndexTest {
+    
+    private static final int DIMENSIONS = 32;
+    
+    @Test
+    void searchShouldFindMostOfTheExactNearestNeighbours() {
+        Random random = new Random(7);
+        float[][] vectors = randomVectors(random, 2000);
+        
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100, 16);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("doc-" + i, vectors[i]);
+        }
+        
+        int found = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVectors(random, 1)[0];
+            
+            Set<String> expected = IntStream.range(0, vectors.length).boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> cosine(query, vectors[i])).reversed())
+                    .limit(10)
+                    .map(i -> "doc-" + i)
+                    .collect(Collectors.toSet());
+            
+            found += (int) index.search(query, 10, 100).stream()
+                    .filter(result -> expected.contains(result.id()))
+                    .count();
+        }
+        
+        assertThat(found / 500.0).isGreaterThan(0.9);
+    }
+    
+    @Test
+    void removedAndReplacedVectorsShouldNotBeReturned() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 50, 16);
+        float[][] vectors = randomVectors(new Random(3), 100);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("doc-" + i, vectors[i]);
+        }
+        
+        index.remove("doc-0");
+        index.add("doc-1", vectors[2]);
+        
+        List<HnswIndex.SearchResult> results = index.search(vectors[0], 100, 100);
+        
+        assertThat(index.size()).isEqualTo(99);
+        assertThat(results).extracting(HnswIndex.SearchResult::id).doesNotContain("doc-0").doesNotHaveDuplicates();
+        assertThat(index.search(vectors[2], 2, 50)).extracting(HnswIndex.SearchResult::id)
+                .containsExactlyInAnyOrder("doc-1", "doc-2");
+    }
+    
+    @Test
+    void updatingAnIdShouldReuseItsNode() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 50, 16);
+        float[][] vectors = randomVectors(new Random(11), 200);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("doc-" + i, vectors[i]);
+        }
+        
+        // Chaque identifiant reçoit le vecteur de son voisin, plusieurs fois
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < vectors.length; i++) {
+                index.add("doc-" + i, vectors[(i + round + 1) % vectors.length]);
+            }
+        }
+        
+        assertThat(index.size()).isEqualTo(200);
+        assertThat(index.tombstoneRatio()).isZero();
+        assertThat(index.search(vectors[5], 1, 50)).extracting(HnswIndex.SearchResult::id).containsExactly("doc-2");
+    }
+    
+    @Test
+    void compactShouldDropRemovedNodesAndKeepSearchResults() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 50, 16);
+        float[][] vectors = randomVectors(new Random(13), 500);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("doc-" + i, vectors[i]);
+        }
+        for (int i = 0; i < 300; i++) {
+            index.remove("doc-" + i);
+        }
+        
+        assertThat(index.tombstoneRatio()).isEqualTo(0.6);
+        assertThat(index.search(vectors[400], 10, 10)).hasSize(10);
+        
+        HnswIndex compacted = index.compact();
+        
+        assertThat(compacted.size()).isEqualTo(200);
+        assertThat(compacted.tombstoneRatio()).isZero();
+        assertThat(compacted.search(vectors[400], 1, 50)).extracting(HnswIndex.SearchResult::id)
+                .containsExactly("doc-400");
+    }
+    
+    @Test
+    void vectorsShouldBeReadBackAcrossStoragePages() {
+        // 4096 nœuds par page : les derniers vecteurs sont dans une seconde page
+        HnswIndex index = new HnswIndex(8, 8, 40, 16);
+        Random random = new Random(17);
+        float[][] vectors = new float[5000][8];
+        for (int i = 0; i < vectors.length; i++) {
+            for (int j = 0; j < 8; j++) {
+                vectors[i][j] = (float) random.nextGaussian();
+            }
+            index.add("doc-" + i, vectors[i]);
+        }
+        
+        for (int i : new int[]{0, 4095, 4096, 4999}) {
+            assertThat(index.search(vectors[i], 1, 50).get(0).score()).isCloseTo(1.0, within(1e-5));
+        }
+    }
+    
+    @Test
+    void snapshotShouldRoundTrip(@TempDir Path directory) throws Exception {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 50, 16);
+        float[][] vectors = randomVectors(new Random(5), 200);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("doc-" + i, vectors[i]);
+        }
+        index.remove("doc-10");
+        
+        Path file = directory.resolve("index.hnsw");
+        index.save(file);
+        HnswIndex loaded = HnswIndex.load(file);
+        
+        assertThat(loaded.size()).isEqualTo(index.size());
+        assertThat(loaded.search(vectors[42], 5, 50)).isEqualTo(index.search(vectors[42], 5, 50));
+    }
+    
+    private static float[][] randomVectors(Random random, int count) {
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+    
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+}
\ No newline at end of file